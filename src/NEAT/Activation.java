@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This enum lists the activation functions a node can apply to the sum of its inputs. Every function can be run
+ * exactly, or approximately through a lookup table with linear interpolation, which avoids calling Math.exp (or
+ * Math.tanh, Math.sin) on every node of every evaluation. The approximations are accurate to within about 2e-6 of the
+ * exact functions. Which of the two a network uses is chosen per genome (Genome.setFast) when it is compiled.
+ */
+
+package NEAT;
+
+public enum Activation {
+    SIGMOID,
+    TANH,
+    RELU,
+    IDENTITY,
+    GAUSSIAN,
+    SINE,
+    ABS;
+    
+    private static final int TABLE_SIZE = 4096;
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final Activation[] VALUES = values();
+    
+    private static final double[] sigmoidTable = table(SIGMOID, -4, 4);
+    private static final double[] tanhTable = table(TANH, -8, 8);
+    private static final double[] gaussianTable = table(GAUSSIAN, -4, 4);
+    private static final double[] sineTable = table(SINE, 0, TWO_PI);
+    
+    /**
+     * Compute the exact activation function. The sigmoid is steepened (slope 5 instead of 1) so that it covers most
+     * of its range between -1 and 1, as the original node sigmoid did.
+     * @param x the sum of a node's inputs
+     * @return the activated value
+     */
+    public double apply(double x) {
+        switch (this) {
+            case SIGMOID:
+                return 1.0d / (1.0d + Math.exp(-5 * x));
+            case TANH:
+                return Math.tanh(x);
+            case RELU:
+                return x > 0 ? x : 0d;
+            case GAUSSIAN:
+                return Math.exp(-x * x);
+            case SINE:
+                return Math.sin(x);
+            case ABS:
+                return Math.abs(x);
+            default:
+                return x;
+        }
+    }
+    
+    /**
+     * Compute the activation function from its lookup table. Outside of the table's range, the functions are within
+     * the same error bound of their limits, so the ends of the table are used. Functions that are already cheap are
+     * computed exactly.
+     * @param x the sum of a node's inputs
+     * @return the approximately activated value
+     */
+    public double approximate(double x) {
+        switch (this) {
+            case SIGMOID:
+                return lookup(sigmoidTable, -4, 4, x);
+            case TANH:
+                return lookup(tanhTable, -8, 8, x);
+            case GAUSSIAN:
+                return lookup(gaussianTable, -4, 4, x);
+            case SINE:
+                double r = x % TWO_PI;
+                return lookup(sineTable, 0, TWO_PI, r < 0 ? r + TWO_PI : r);
+            default:
+                return apply(x);
+        }
+    }
+    
+    /**
+     * Compute the activation function in whichever mode is requested
+     * @param x    the sum of a node's inputs
+     * @param fast whether to use the approximation
+     * @return the activated value
+     */
+    public double apply(double x, boolean fast) {
+        return fast ? approximate(x) : apply(x);
+    }
+    
+    /**
+     * Sample an activation function evenly over a range, including both ends
+     */
+    private static double[] table(Activation a, double min, double max) {
+        double[] t = new double[TABLE_SIZE + 1];
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            t[i] = a.apply(min + (max - min) * i / TABLE_SIZE);
+        }
+        return t;
+    }
+    
+    /**
+     * Linearly interpolate a table sampled over [min, max], clamping to its ends
+     */
+    private static double lookup(double[] t, double min, double max, double x) {
+        double pos = (x - min) * (TABLE_SIZE / (max - min));
+        if (!(pos > 0)) return t[0];
+        if (pos >= TABLE_SIZE) return t[TABLE_SIZE];
+        int i = (int) pos;
+        double frac = pos - i;
+        return t[i] + (t[i + 1] - t[i]) * frac;
+    }
+    
+    /**
+     * @param id the id of an activation function, as returned by getID
+     * @return the activation function with that id
+     */
+    public static Activation fromID(byte id) {
+        return VALUES[id];
+    }
+    
+    /**
+     * @return a small id for this function, used to store it compactly in compiled networks
+     */
+    public byte getID() {
+        return (byte) ordinal();
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class keeps track of which pairs of a genome's nodes are connected, along with the number of pairs that could
+ * still legally be connected. A pair is legal in a feed-forward genome if its nodes are at different depths (the gene
+ * then leads from the shallower node to the deeper one), and in a recurrent genome if the second node is not an
+ * input. Knowing the number of free pairs leaving each node means a free pair can be picked directly, rather than by
+ * trying random pairs until one is free. Each node has a row of its genes, in and out, sorted by the node at their
+ * other end, so the memory used grows with the number of genes rather than the square of the number of nodes. Copies
+ * of a genome share its adjacency, and a row is only copied once one of them changes it. The genome keeps it up to
+ * date as it adds nodes and connections, and builds a new one only when its lists have been changed from outside.
+ */
+
+package NEAT;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+class Adjacency {
+    private static final long OUT = 1L << 31;
+    private List<Node> nodes;
+    private List<Gene> genes;
+    private final boolean recurrent;
+    private int nodeCount;
+    private int geneCount;
+    private long[][] rows;
+    private int[] sizes;
+    private int[] free;
+    private int total;
+    private boolean shared;
+    private BitSet owned;
+    
+    /**
+     * Record every gene of a genome, connected or not. This takes time proportional to the number of genes, and to
+     * the number of nodes times its logarithm.
+     * @param g the genome
+     */
+    Adjacency(Genome g) {
+        nodes = g.getNodes();
+        genes = g.getGenes();
+        recurrent = g.isRecurrent();
+        nodeCount = nodes.size();
+        int capacity = Math.max(16, nodeCount);
+        rows = new long[capacity][];
+        sizes = new int[capacity];
+        free = new int[capacity];
+        owned = new BitSet();
+        for (int k = 0; k < genes.size(); k++) {
+            Gene gene = genes.get(k);
+            int a = g.getNode(gene.getFromNode());
+            int b = g.getNode(gene.getToNode());
+            if (a < 0 || b < 0) continue;
+            writable(a, 1)[sizes[a]++] = entry(b, true, k);
+            writable(b, 1)[sizes[b]++] = entry(a, false, k);
+        }
+        geneCount = genes.size();
+        
+        double[] depths = new double[nodeCount];
+        int inputs = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            depths[i] = nodes.get(i).getDepth();
+            if (nodes.get(i).getLayer() == 0) inputs++;
+        }
+        Arrays.sort(depths);
+        for (int i = 0; i < nodeCount; i++) {
+            if (rows[i] != null) Arrays.sort(rows[i], 0, sizes[i]);
+            int legal = recurrent ? nodeCount - inputs : nodeCount - atOrBelow(depths, nodes.get(i).getDepth());
+            free[i] = legal - connected(i);
+            total += free[i];
+        }
+    }
+    
+    /**
+     * A copy of another adjacency for a copy of its genome, sharing all of its rows
+     */
+    private Adjacency(Adjacency a, List<Node> nodes, List<Gene> genes) {
+        this.nodes = nodes;
+        this.genes = genes;
+        recurrent = a.recurrent;
+        nodeCount = a.nodeCount;
+        geneCount = a.geneCount;
+        rows = a.rows;
+        sizes = a.sizes;
+        free = a.free;
+        total = a.total;
+        shared = true;
+        owned = new BitSet();
+    }
+    
+    /**
+     * Share this adjacency with a copy of its genome, whose lists have the same nodes and genes in the same places.
+     * Neither adjacency changes anything the other can see from then on.
+     * @param nodes the copy's nodes
+     * @param genes the copy's genes
+     * @return the copy's adjacency
+     */
+    Adjacency share(List<Node> nodes, List<Gene> genes) {
+        shared = true;
+        owned = new BitSet();
+        return new Adjacency(this, nodes, genes);
+    }
+    
+    /**
+     * @param g the genome this was built for
+     * @return whether nothing has been added to or replaced in the genome's lists without being recorded here
+     */
+    boolean isCurrent(Genome g) {
+        return g.getNodes() == nodes && g.getGenes() == genes && g.isRecurrent() == recurrent
+                && nodes.size() == nodeCount && genes.size() == geneCount;
+    }
+    
+    /**
+     * Record a node that has just been added to the end of the genome's nodes, before any of its genes are added
+     */
+    void addNode() {
+        own();
+        int p = nodeCount++;
+        if (p == rows.length) {
+            rows = Arrays.copyOf(rows, p * 2);
+            sizes = Arrays.copyOf(sizes, p * 2);
+            free = Arrays.copyOf(free, p * 2);
+        }
+        for (int j = 0; j < p; j++) {
+            if (legal(j, p)) {
+                free[j]++;
+                total++;
+            }
+        }
+        for (int j = 0; j <= p; j++) {
+            if (legal(p, j)) free[p]++;
+        }
+        total += free[p];
+    }
+    
+    /**
+     * Record a gene that has just been added to the end of the genome's genes
+     * @param a the index of the gene's fromNode in the genome's nodes
+     * @param b the index of the gene's toNode
+     */
+    void connect(int a, int b) {
+        int k = geneCount++;
+        if (a < 0 || b < 0) return;
+        boolean set = isSet(a, b);
+        insert(a, entry(b, true, k));
+        insert(b, entry(a, false, k));
+        if (set) return;
+        int from = recurrent || nodes.get(a).getDepth() < nodes.get(b).getDepth() ? a : b;
+        int to = from == a ? b : a;
+        if (legal(from, to)) {
+            free[from]--;
+            total--;
+        }
+    }
+    
+    /**
+     * @return the number of pairs of nodes that could still be connected
+     */
+    int getFree() {
+        return total;
+    }
+    
+    /**
+     * Find one of the pairs that could still be connected. Each call takes time proportional to the number of nodes.
+     * @param r which free pair to find, from 0 to getFree() exclusive
+     * @return the indexes of the pair's nodes, in the direction the gene would lead
+     */
+    int[] pick(int r) {
+        int i = 0;
+        while (r >= free[i]) {
+            r -= free[i++];
+        }
+        for (int j = 0; j < nodeCount; j++) {
+            if (legal(i, j) && !isSet(i, j) && r-- == 0) return new int[]{i, j};
+        }
+        return null;
+    }
+    
+    /**
+     * @param i the index of a node in the genome's nodes
+     * @return the indexes in the genome's genes of every gene into or out of that node
+     */
+    int[] incident(int i) {
+        int[] found = new int[sizes[i]];
+        int count = 0;
+        for (int e = 0; e < sizes[i]; e++) {
+            long entry = rows[i][e];
+            if ((int) (entry >>> 32) == i && (entry & OUT) != 0) continue;
+            found[count++] = (int) (entry & OUT - 1);
+        }
+        return Arrays.copyOf(found, count);
+    }
+    
+    /**
+     * @param i the index of a node in the genome's nodes
+     * @return the indexes of the nodes its genes lead to, each once
+     */
+    int[] successors(int i) {
+        int[] found = new int[sizes[i]];
+        int count = 0;
+        for (int e = 0; e < sizes[i]; e++) {
+            long entry = rows[i][e];
+            int j = (int) (entry >>> 32);
+            if ((entry & OUT) != 0 && (count == 0 || found[count - 1] != j)) found[count++] = j;
+        }
+        return Arrays.copyOf(found, count);
+    }
+    
+    /**
+     * @return whether a gene could lead from the i-th node to the j-th one, ignoring whether one already does
+     */
+    private boolean legal(int i, int j) {
+        return recurrent ? nodes.get(j).getLayer() != 0 : nodes.get(i).getDepth() < nodes.get(j).getDepth();
+    }
+    
+    /**
+     * @return whether the i-th node has a gene leading to the j-th one, or in a feed-forward genome a gene between
+     * them either way round, as it only ever has one gene between a pair
+     */
+    private boolean isSet(int i, int j) {
+        long[] row = rows[i];
+        if (row == null) return false;
+        int at = lowest(row, sizes[i], (long) j << 32 | (recurrent ? OUT : 0));
+        return at < sizes[i] && (int) (row[at] >>> 32) == j;
+    }
+    
+    /**
+     * @return the number of nodes the i-th node is connected to that a new gene from it could otherwise lead to
+     */
+    private int connected(int i) {
+        int c = 0;
+        int last = -1;
+        for (int e = 0; e < sizes[i]; e++) {
+            long entry = rows[i][e];
+            int j = (int) (entry >>> 32);
+            if (j == last || recurrent && (entry & OUT) == 0) continue;
+            last = j;
+            if (legal(i, j)) c++;
+        }
+        return c;
+    }
+    
+    /**
+     * An entry in a node's row, sorted by the node at the other end, then by whether the gene leads out of the node
+     * @param other the index of the node at the other end of the gene
+     * @param out   whether the gene leads out of the row's node
+     * @param gene  the index of the gene in the genome's genes
+     */
+    private static long entry(int other, boolean out, int gene) {
+        return (long) other << 32 | (out ? OUT : 0) | gene;
+    }
+    
+    /**
+     * Add an entry to a row in its place
+     */
+    private void insert(int i, long entry) {
+        long[] row = writable(i, 1);
+        int at = lowest(row, sizes[i], entry);
+        System.arraycopy(row, at, row, at + 1, sizes[i] - at);
+        row[at] = entry;
+        sizes[i]++;
+    }
+    
+    /**
+     * @return the i-th row, copied first if it may be shared with another adjacency or has no room for the extra
+     * entries
+     */
+    private long[] writable(int i, int extra) {
+        own();
+        long[] row = rows[i];
+        int needed = sizes[i] + extra;
+        if (row == null) {
+            row = new long[Math.max(4, needed)];
+        } else if (!owned.get(i) || row.length < needed) {
+            row = Arrays.copyOf(row, Math.max(needed, row.length < needed ? row.length * 2 : row.length));
+        }
+        rows[i] = row;
+        owned.set(i);
+        return row;
+    }
+    
+    /**
+     * Take copies of the row table and counts of this adjacency's own, if they may be shared with another
+     * adjacency. The rows themselves are still shared until each is written.
+     */
+    private void own() {
+        if (!shared) return;
+        rows = rows.clone();
+        sizes = sizes.clone();
+        free = free.clone();
+        shared = false;
+    }
+    
+    /**
+     * @return the position of the first entry at or above the key among the first size entries of a sorted row
+     */
+    private static int lowest(long[] row, int size, long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (row[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * @return the number of sorted depths at or below the provided depth
+     */
+    private static int atOrBelow(double[] depths, double depth) {
+        int low = 0;
+        int high = depths.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (depths[mid] <= depth) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
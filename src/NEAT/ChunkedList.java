@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class is a list kept in chunks of a fixed size, which copies of the list share until one of them writes to a
+ * chunk. Only that chunk is then copied, so a copy costs nothing up front and each change made to it afterwards costs
+ * at most one chunk. Genomes keep their nodes and genes in these lists so that copies and children can share them.
+ * Inserting or removing anywhere but the end shifts every later element, as in an ArrayList.
+ */
+
+package NEAT;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+class ChunkedList<E> extends AbstractList<E> implements RandomAccess {
+    private static final int SHIFT = 5;
+    private static final int CHUNK = 1 << SHIFT;
+    private static final int MASK = CHUNK - 1;
+    private Object[][] chunks;
+    private int size;
+    private boolean shared;
+    private BitSet owned;
+    
+    ChunkedList() {
+        chunks = new Object[4][];
+        owned = new BitSet();
+    }
+    
+    /**
+     * @param c the elements to start the list with, in order
+     */
+    ChunkedList(Collection<? extends E> c) {
+        this();
+        for (E e : c) {
+            add(e);
+        }
+    }
+    
+    /**
+     * A copy of another list, sharing all of its chunks
+     */
+    private ChunkedList(ChunkedList<E> l) {
+        chunks = l.chunks;
+        size = l.size;
+        shared = true;
+        owned = new BitSet();
+    }
+    
+    /**
+     * Copy this list in constant time. Neither list changes anything the other can see from then on.
+     * @return the copy
+     */
+    ChunkedList<E> share() {
+        shared = true;
+        owned = new BitSet();
+        return new ChunkedList<>(this);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int i) {
+        Objects.checkIndex(i, size);
+        return (E) chunks[i >>> SHIFT][i & MASK];
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int i, E e) {
+        Objects.checkIndex(i, size);
+        Object[] chunk = writable(i >>> SHIFT);
+        E old = (E) chunk[i & MASK];
+        chunk[i & MASK] = e;
+        return old;
+    }
+    
+    @Override
+    public boolean add(E e) {
+        int c = size >>> SHIFT;
+        if ((size & MASK) == 0) {
+            own();
+            if (c == chunks.length) chunks = Arrays.copyOf(chunks, c * 2);
+            chunks[c] = new Object[CHUNK];
+            owned.set(c);
+        }
+        writable(c)[size & MASK] = e;
+        size++;
+        modCount++;
+        return true;
+    }
+    
+    @Override
+    public void add(int i, E e) {
+        Objects.checkIndex(i, size + 1);
+        add(e);
+        for (int j = size - 1; j > i; j--) {
+            set(j, get(j - 1));
+        }
+        set(i, e);
+    }
+    
+    @Override
+    public E remove(int i) {
+        E old = get(i);
+        for (int j = i; j < size - 1; j++) {
+            set(j, get(j + 1));
+        }
+        set(size - 1, null);
+        size--;
+        modCount++;
+        return old;
+    }
+    
+    @Override
+    public void clear() {
+        chunks = new Object[4][];
+        size = 0;
+        shared = false;
+        owned = new BitSet();
+        modCount++;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return the c-th chunk, copied first if it may be shared with another list
+     */
+    private Object[] writable(int c) {
+        own();
+        if (!owned.get(c)) {
+            chunks[c] = chunks[c].clone();
+            owned.set(c);
+        }
+        return chunks[c];
+    }
+    
+    /**
+     * Take a copy of the table of chunks of this list's own, if it may be shared with another list. The chunks
+     * themselves are still shared until each is written.
+     */
+    private void own() {
+        if (!shared) return;
+        chunks = chunks.clone();
+        shared = false;
+    }
+}
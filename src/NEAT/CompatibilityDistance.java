@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class measures how far apart two genomes are, to decide whether they belong to the same species. Genes the
+ * genomes share are matching; a gene only one of them has is excess if its ID is past every ID of the other
+ * genome, and disjoint otherwise. The distance is
+ *     excessCoefficient * excess / N + disjointCoefficient * disjoint / N + weightCoefficient * mean weight difference
+ * where N is the size of the larger genome less SMALL_GENOME (at least 1), so small genomes are not told apart by
+ * a handful of genes. All three counts come from a single pass over the two genomes' gene indexes, which are sorted
+ * by ID, so measuring takes time proportional to the genomes' sizes. Distances are also remembered in a bounded
+ * cache keyed by the two genomes' versions, so a genome that has not changed since the last generation is not
+ * measured against an unchanged reference again. The cache is a fixed array of immutable entries, each slot simply
+ * overwritten by the latest distance that hashes to it, so one instance can be shared by every species and thread.
+ */
+
+package NEAT;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class CompatibilityDistance {
+    public static final double DEFAULT_EXCESS_COEFFICIENT = 1d;
+    public static final double DEFAULT_DISJOINT_COEFFICIENT = 1d;
+    public static final double DEFAULT_WEIGHT_COEFFICIENT = 0.5d;
+    public static final double DEFAULT_THRESHOLD = 3d;
+    public static final int SMALL_GENOME = 20;
+    public static final double NO_MATCH_DIFFERENCE = 1000d;
+    public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+    private volatile double excessCoefficient;
+    private volatile double disjointCoefficient;
+    private volatile double weightCoefficient;
+    private volatile double threshold;
+    private volatile Entry[] cache = new Entry[DEFAULT_CACHE_SIZE];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public CompatibilityDistance() {
+        this(DEFAULT_EXCESS_COEFFICIENT, DEFAULT_DISJOINT_COEFFICIENT, DEFAULT_WEIGHT_COEFFICIENT, DEFAULT_THRESHOLD);
+    }
+    
+    /**
+     * @param excessCoefficient   the weight of excess genes
+     * @param disjointCoefficient the weight of disjoint genes
+     * @param weightCoefficient   the weight of the mean weight difference of matching genes
+     * @param threshold           the distance below which two genomes are of the same species
+     */
+    public CompatibilityDistance(double excessCoefficient, double disjointCoefficient, double weightCoefficient,
+                                 double threshold) {
+        this.excessCoefficient = excessCoefficient;
+        this.disjointCoefficient = disjointCoefficient;
+        this.weightCoefficient = weightCoefficient;
+        this.threshold = threshold;
+    }
+    
+    /**
+     * @param a a genome
+     * @param b another genome
+     * @return the distance between the genomes; genomes with no genes in common are NO_MATCH_DIFFERENCE apart in
+     * weight, to keep them in different species
+     */
+    public double distance(Genome a, Genome b) {
+        Entry[] slots = cache;
+        if (slots.length == 0) return measure(a, b);
+        long aVersion = a.getVersion();
+        long bVersion = b.getVersion();
+        int slot = slot(aVersion, bVersion, slots.length);
+        Entry e = slots[slot];
+        if (e != null && e.a == aVersion && e.b == bVersion) {
+            hits.increment();
+            return e.distance;
+        }
+        misses.increment();
+        double distance = measure(a, b);
+        slots[slot] = new Entry(aVersion, bVersion, distance);
+        return distance;
+    }
+    
+    /**
+     * @return the slot of the cache holding the distance between two genome versions
+     */
+    private static int slot(long a, long b, int size) {
+        long h = a * 0x9E3779B97F4A7C15L + b;
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        return (int) h & (size - 1);
+    }
+    
+    /**
+     * Count the excess, disjoint and matching genes of two genomes in a single pass
+     */
+    private double measure(Genome a, Genome b) {
+        long[] aKeys = a.geneKeys();
+        long[] bKeys = b.geneKeys();
+        int i = 0;
+        int j = 0;
+        int matching = 0;
+        int disjoint = 0;
+        double weightDiff = 0;
+        while (i < aKeys.length && j < bKeys.length) {
+            int aID = (int) (aKeys[i] >> 32);
+            int bID = (int) (bKeys[j] >> 32);
+            if (aID == bID) {
+                matching++;
+                weightDiff += Math.abs(a.getGenes().get((int) aKeys[i]).getWeight()
+                        - b.getGenes().get((int) bKeys[j]).getWeight());
+                i++;
+                j++;
+            } else if (aID < bID) {
+                disjoint++;
+                i++;
+            } else {
+                disjoint++;
+                j++;
+            }
+        }
+        int excess = aKeys.length - i + bKeys.length - j;
+        int normalizer = Math.max(Math.max(aKeys.length, bKeys.length) - SMALL_GENOME, 1);
+        double meanWeightDiff = matching == 0 ? NO_MATCH_DIFFERENCE : weightDiff / matching;
+        return (excessCoefficient * excess + disjointCoefficient * disjoint) / normalizer
+                + weightCoefficient * meanWeightDiff;
+    }
+    
+    /**
+     * @param a a genome
+     * @param b another genome
+     * @return whether the genomes are close enough to be of the same species
+     */
+    public boolean isCompatible(Genome a, Genome b) {
+        return distance(a, b) < threshold;
+    }
+    
+    public double getExcessCoefficient() {
+        return excessCoefficient;
+    }
+    
+    public void setExcessCoefficient(double excessCoefficient) {
+        this.excessCoefficient = excessCoefficient;
+        clearCache();
+    }
+    
+    public double getDisjointCoefficient() {
+        return disjointCoefficient;
+    }
+    
+    public void setDisjointCoefficient(double disjointCoefficient) {
+        this.disjointCoefficient = disjointCoefficient;
+        clearCache();
+    }
+    
+    public double getWeightCoefficient() {
+        return weightCoefficient;
+    }
+    
+    public void setWeightCoefficient(double weightCoefficient) {
+        this.weightCoefficient = weightCoefficient;
+        clearCache();
+    }
+    
+    /**
+     * Forget every remembered distance; needed only after genomes have been changed without changing their versions
+     */
+    public void clearCache() {
+        cache = new Entry[cache.length];
+    }
+    
+    public int getCacheSize() {
+        return cache.length;
+    }
+    
+    /**
+     * @param size the number of distances to remember, rounded up to a power of two; 0 turns the cache off
+     */
+    public void setCacheSize(int size) {
+        cache = new Entry[size <= 0 ? 0 : 1 << 32 - Integer.numberOfLeadingZeros(size - 1)];
+    }
+    
+    /**
+     * @return the number of distances found in the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    /**
+     * @return the number of distances measured because they were not in the cache
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public double getThreshold() {
+        return threshold;
+    }
+    
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+    
+    private static final class Entry {
+        private final long a;
+        private final long b;
+        private final double distance;
+        
+        private Entry(long a, long b, double distance) {
+            this.a = a;
+            this.b = b;
+            this.distance = distance;
+        }
+    }
+}
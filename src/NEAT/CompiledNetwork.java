@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class is a "compiled" form of a Genome's network. The nodes are laid out in the order in which they need to
+ * operate (the Genome's network list), and every enabled gene is flattened into primitive arrays grouped by the
+ * node it leaves from (CSR layout), so that running the network is a single pass over a few arrays rather than
+ * walking Node and Gene objects. The layout itself is a NetworkTopology, which may be shared with other genomes of
+ * the same structure; this class adds the genome's own weights. It is built once from a Genome and must be rebuilt
+ * whenever that Genome changes. Each node's activation function is stored as a byte, and is computed exactly or
+ * approximately depending on the genome's activation mode at the time the network was compiled. Node values are
+ * kept in a scratch buffer per thread rather than per network, so evaluation allocates nothing once a thread's buffer
+ * has grown to fit the largest network it runs.
+ */
+
+package NEAT;
+
+import java.util.Arrays;
+
+public class CompiledNetwork implements NetworkEvaluator {
+    private final NetworkTopology topology;
+    private final int inputSize;
+    private final int outputSize;
+    private final int inputCount;
+    private final int[] inputIndex;
+    private final int biasIndex;
+    private final int[] outputIndex;
+    
+    private final int[] from;
+    private final int[] to;
+    private final double[] weight;
+    private final byte[] activation;
+    private final boolean fast;
+    private final int nodeCount;
+    
+    private static final ThreadLocal<double[][]> scratch = ThreadLocal.withInitial(() -> new double[2][0]);
+    
+    /**
+     * Flatten the network of the provided genome, with a topology of its own
+     * @param g the genome to compile, whose network list has already been built
+     */
+    public CompiledNetwork(Genome g) {
+        this(new NetworkTopology(g), g);
+    }
+    
+    /**
+     * Flatten the network of the provided genome onto an existing topology
+     * @param t the topology, built from this genome or from one with the same fingerprint
+     * @param g the genome to compile, whose network list has already been built
+     */
+    public CompiledNetwork(NetworkTopology t, Genome g) {
+        topology = t;
+        inputSize = t.getInputSize();
+        outputSize = t.getOutputSize();
+        inputCount = t.getInputCount();
+        nodeCount = t.getNodeCount();
+        inputIndex = t.getInputIndex();
+        biasIndex = t.getBiasIndex();
+        outputIndex = t.getOutputIndex();
+        from = t.getFrom();
+        to = t.getTo();
+        activation = t.getActivation();
+        fast = t.isFast();
+        weight = t.weights(g);
+    }
+    
+    /**
+     * Feed the inputs through the network and collect the outputs into a new array
+     * @param ins the values to feed the network, one per input node
+     * @return the outputs of each output node
+     */
+    public double[] run(double[] ins) {
+        double[] outs = new double[outputSize];
+        evaluate(ins, outs);
+        return outs;
+    }
+    
+    /**
+     * Feed the inputs (and a value of 1 for the bias node) through the network, in the same manner as
+     * Genome.runNetwork has always done, and write the outputs into the provided array.
+     * @param ins  the values to feed the network, one per input node
+     * @param outs the array to fill, one value per output node
+     */
+    @Override
+    public void evaluate(double[] ins, double[] outs) {
+        double[] v = buffer(0, nodeCount);
+        for (int i = 0; i < inputSize; i++) {
+            if (inputIndex[i] != -1) v[inputIndex[i]] = ins[i];
+        }
+        if (biasIndex != -1) v[biasIndex] = 1d;
+        
+        for (int n = 0; n < nodeCount; n++) {
+            double out = n < inputCount ? v[n] : Activation.fromID(activation[n]).apply(v[n], fast);
+            v[n] = out;
+            for (int e = from[n]; e < from[n + 1]; e++) {
+                v[to[e]] += out * weight[e];
+            }
+        }
+        
+        for (int i = 0; i < outputSize; i++) {
+            outs[i] = outputIndex[i] != -1 ? v[outputIndex[i]] : 0d;
+        }
+    }
+    
+    /**
+     * Feed many sets of inputs through the network in a single pass. Node values are stored node-major (every row's
+     * value for a node sits together), so each gene's weight is loaded once and applied across the whole batch.
+     * @param ins  the inputs of every row, row-major (rows * inputSize values)
+     * @param rows the number of rows in the batch
+     * @return the outputs of every row, row-major (rows * outputSize values)
+     */
+    public double[] runBatch(double[] ins, int rows) {
+        double[] v = buffer(1, nodeCount * rows);
+        for (int i = 0; i < inputSize; i++) {
+            if (inputIndex[i] == -1) continue;
+            int base = inputIndex[i] * rows;
+            for (int r = 0; r < rows; r++) {
+                v[base + r] = ins[r * inputSize + i];
+            }
+        }
+        if (biasIndex != -1) Arrays.fill(v, biasIndex * rows, (biasIndex + 1) * rows, 1d);
+        
+        for (int n = 0; n < nodeCount; n++) {
+            int base = n * rows;
+            if (n >= inputCount) {
+                Activation a = Activation.fromID(activation[n]);
+                for (int r = 0; r < rows; r++) {
+                    v[base + r] = a.apply(v[base + r], fast);
+                }
+            }
+            for (int e = from[n]; e < from[n + 1]; e++) {
+                double w = weight[e];
+                int target = to[e] * rows;
+                for (int r = 0; r < rows; r++) {
+                    v[target + r] += v[base + r] * w;
+                }
+            }
+        }
+        
+        double[] outs = new double[rows * outputSize];
+        for (int i = 0; i < outputSize; i++) {
+            if (outputIndex[i] == -1) continue;
+            int base = outputIndex[i] * rows;
+            for (int r = 0; r < rows; r++) {
+                outs[r * outputSize + i] = v[base + r];
+            }
+        }
+        return outs;
+    }
+    
+    /**
+     * Get this thread's scratch buffer, growing it if it is too small, with the first "size" values cleared
+     * @param which 0 for single evaluations, 1 for batches
+     * @param size  the number of values needed
+     * @return the scratch buffer
+     */
+    static double[] buffer(int which, int size) {
+        double[][] buffers = scratch.get();
+        if (buffers[which].length < size) {
+            buffers[which] = new double[size];
+        } else {
+            Arrays.fill(buffers[which], 0, size, 0d);
+        }
+        return buffers[which];
+    }
+    
+    public NetworkTopology getTopology() {
+        return topology;
+    }
+    
+    int getInputCount() {
+        return inputCount;
+    }
+    
+    int[] getInputIndex() {
+        return inputIndex;
+    }
+    
+    int getBiasIndex() {
+        return biasIndex;
+    }
+    
+    int[] getOutputIndex() {
+        return outputIndex;
+    }
+    
+    int[] getFrom() {
+        return from;
+    }
+    
+    int[] getTo() {
+        return to;
+    }
+    
+    double[] getWeight() {
+        return weight;
+    }
+    
+    byte[] getActivation() {
+        return activation;
+    }
+    
+    boolean isFast() {
+        return fast;
+    }
+    
+    public int getInputSize() {
+        return inputSize;
+    }
+    
+    public int getOutputSize() {
+        return outputSize;
+    }
+    
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
+    public int getGeneCount() {
+        return to.length;
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class is a compiled network laid out level by level for genomes that have grown dense. Each node is placed in
+ * the level after the deepest node that feeds it, and the nodes of each level are numbered consecutively, so every
+ * gene into a level comes from a range of nodes just before it. The genes into a level are stored either as a dense
+ * matrix over that range (when enough of it is filled) or as a list per node, and the network is run one level at a
+ * time: a dense level is a matrix-vector product with no index lookups, computed four nodes at a time so that each
+ * value read is used four times. Results match the CompiledNetwork it is built from to within rounding, as genes are
+ * summed in a different order.
+ */
+
+package NEAT;
+
+import java.util.Arrays;
+
+public class DenseNetwork implements NetworkEvaluator {
+    /** the default fraction of a level's matrix that must hold genes for it to be stored densely */
+    public static final double DEFAULT_DENSITY = 0.25d;
+    /** the number of batch rows run through the network at a time, so their values stay in cache */
+    private static final int BLOCK_ROWS = 256;
+    
+    private final int inputSize;
+    private final int outputSize;
+    private final int nodeCount;
+    private final int geneCount;
+    private final int[] inputIndex;
+    private final int biasIndex;
+    private final int[] outputIndex;
+    private final byte[] activation;
+    private final boolean fast;
+    
+    private final int[] start;
+    private final boolean[] dense;
+    private final int[] columnStart;
+    private final int[] columns;
+    private final int[] offset;
+    private final double[] matrix;
+    private final int[] into;
+    private final int[] source;
+    private final double[] weight;
+    
+    /**
+     * Lay out a compiled network by level, using the default density threshold
+     * @param c the compiled network
+     */
+    public DenseNetwork(CompiledNetwork c) {
+        this(c, DEFAULT_DENSITY);
+    }
+    
+    /**
+     * Lay out a compiled network by level
+     * @param c         the compiled network
+     * @param threshold the fraction of a level's matrix that must hold genes for it to be stored densely (0 stores
+     *                  every level densely, anything above 1 none of them)
+     */
+    public DenseNetwork(CompiledNetwork c, double threshold) {
+        inputSize = c.getInputSize();
+        outputSize = c.getOutputSize();
+        nodeCount = c.getNodeCount();
+        geneCount = c.getGeneCount();
+        fast = c.isFast();
+        int inputCount = c.getInputCount();
+        int[] from = c.getFrom();
+        int[] to = c.getTo();
+        double[] w = c.getWeight();
+        
+        int[] level = new int[nodeCount];
+        int deepest = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            if (n >= inputCount && level[n] == 0) level[n] = 1;
+            for (int e = from[n]; e < from[n + 1]; e++) {
+                level[to[e]] = Math.max(level[to[e]], level[n] + 1);
+            }
+            deepest = Math.max(deepest, level[n]);
+        }
+        int levels = deepest + 1;
+        start = new int[levels + 1];
+        for (int n = 0; n < nodeCount; n++) {
+            start[level[n] + 1]++;
+        }
+        for (int l = 0; l < levels; l++) {
+            start[l + 1] += start[l];
+        }
+        int[] place = new int[nodeCount];
+        int[] node = new int[nodeCount];
+        int[] next = Arrays.copyOf(start, levels);
+        for (int n = 0; n < nodeCount; n++) {
+            place[n] = next[level[n]]++;
+            node[place[n]] = n;
+        }
+        
+        activation = new byte[nodeCount];
+        for (int n = 0; n < nodeCount; n++) {
+            activation[place[n]] = c.getActivation()[n];
+        }
+        inputIndex = c.getInputIndex().clone();
+        for (int i = 0; i < inputSize; i++) {
+            if (inputIndex[i] != -1) inputIndex[i] = place[inputIndex[i]];
+        }
+        biasIndex = c.getBiasIndex() == -1 ? -1 : place[c.getBiasIndex()];
+        outputIndex = c.getOutputIndex().clone();
+        for (int i = 0; i < outputSize; i++) {
+            if (outputIndex[i] != -1) outputIndex[i] = place[outputIndex[i]];
+        }
+        
+        into = new int[nodeCount + 1];
+        for (int e = 0; e < geneCount; e++) {
+            into[place[to[e]] + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            into[n + 1] += into[n];
+        }
+        source = new int[geneCount];
+        weight = new double[geneCount];
+        next = Arrays.copyOf(into, nodeCount);
+        for (int p = 0; p < nodeCount; p++) {
+            int n = node[p];
+            for (int e = from[n]; e < from[n + 1]; e++) {
+                int s = next[place[to[e]]]++;
+                source[s] = p;
+                weight[s] = w[e];
+            }
+        }
+        
+        dense = new boolean[levels];
+        columnStart = new int[levels];
+        columns = new int[levels];
+        offset = new int[levels];
+        int size = 0;
+        for (int l = 1; l < levels; l++) {
+            int low = start[l];
+            for (int s = into[start[l]]; s < into[start[l + 1]]; s++) {
+                low = Math.min(low, source[s]);
+            }
+            columnStart[l] = low;
+            columns[l] = start[l] - low;
+            long cells = (long) columns[l] * (start[l + 1] - start[l]);
+            int genes = into[start[l + 1]] - into[start[l]];
+            if (cells > 0 && cells <= Integer.MAX_VALUE - size && genes >= threshold * cells) {
+                dense[l] = true;
+                offset[l] = size;
+                size += (int) cells;
+            }
+        }
+        matrix = new double[size];
+        for (int l = 1; l < levels; l++) {
+            if (!dense[l]) continue;
+            for (int n = start[l]; n < start[l + 1]; n++) {
+                int row = offset[l] + (n - start[l]) * columns[l] - columnStart[l];
+                for (int s = into[n]; s < into[n + 1]; s++) {
+                    matrix[row + source[s]] += weight[s];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Feed the inputs (and a value of 1 for the bias node) through the network one level at a time, and write the
+     * outputs into the provided array.
+     * @param ins  the values to feed the network, one per input node
+     * @param outs the array to fill, one value per output node
+     */
+    @Override
+    public void evaluate(double[] ins, double[] outs) {
+        double[] v = CompiledNetwork.buffer(0, nodeCount);
+        for (int i = 0; i < inputSize; i++) {
+            if (inputIndex[i] != -1) v[inputIndex[i]] = ins[i];
+        }
+        if (biasIndex != -1) v[biasIndex] = 1d;
+        
+        for (int l = 1; l < dense.length; l++) {
+            int low = start[l];
+            int high = start[l + 1];
+            if (dense[l]) {
+                int cols = columns[l];
+                int c0 = columnStart[l];
+                int n = low;
+                for (; n + 3 < high; n += 4) {
+                    int m0 = offset[l] + (n - low) * cols;
+                    int m1 = m0 + cols;
+                    int m2 = m1 + cols;
+                    int m3 = m2 + cols;
+                    double s0 = 0d, s1 = 0d, s2 = 0d, s3 = 0d;
+                    for (int k = 0; k < cols; k++) {
+                        double x = v[c0 + k];
+                        s0 += matrix[m0 + k] * x;
+                        s1 += matrix[m1 + k] * x;
+                        s2 += matrix[m2 + k] * x;
+                        s3 += matrix[m3 + k] * x;
+                    }
+                    v[n] = s0;
+                    v[n + 1] = s1;
+                    v[n + 2] = s2;
+                    v[n + 3] = s3;
+                }
+                for (; n < high; n++) {
+                    int m = offset[l] + (n - low) * cols;
+                    double sum = 0d;
+                    for (int k = 0; k < cols; k++) {
+                        sum += matrix[m + k] * v[c0 + k];
+                    }
+                    v[n] = sum;
+                }
+            } else {
+                for (int n = low; n < high; n++) {
+                    double sum = 0d;
+                    for (int s = into[n]; s < into[n + 1]; s++) {
+                        sum += weight[s] * v[source[s]];
+                    }
+                    v[n] = sum;
+                }
+            }
+            for (int n = low; n < high; n++) {
+                v[n] = Activation.fromID(activation[n]).apply(v[n], fast);
+            }
+        }
+        
+        for (int i = 0; i < outputSize; i++) {
+            outs[i] = outputIndex[i] != -1 ? v[outputIndex[i]] : 0d;
+        }
+    }
+    
+    /**
+     * Feed many sets of inputs through the network. Node values are stored node-major, as in
+     * CompiledNetwork.runBatch, and the whole network is run over one block of rows at a time so that the values it
+     * reads and writes stay in cache; the innermost loops run across rows, where they can be vectorised.
+     * @param ins  the inputs of every row, row-major (rows * inputSize values)
+     * @param rows the number of rows in the batch
+     * @return the outputs of every row, row-major (rows * outputSize values)
+     */
+    public double[] runBatch(double[] ins, int rows) {
+        double[] v = CompiledNetwork.buffer(1, nodeCount * rows);
+        for (int i = 0; i < inputSize; i++) {
+            if (inputIndex[i] == -1) continue;
+            int base = inputIndex[i] * rows;
+            for (int r = 0; r < rows; r++) {
+                v[base + r] = ins[r * inputSize + i];
+            }
+        }
+        if (biasIndex != -1) Arrays.fill(v, biasIndex * rows, (biasIndex + 1) * rows, 1d);
+        
+        for (int r0 = 0; r0 < rows; r0 += BLOCK_ROWS) {
+            int r1 = Math.min(rows, r0 + BLOCK_ROWS);
+            for (int l = 1; l < dense.length; l++) {
+                for (int n = start[l]; n < start[l + 1]; n++) {
+                    int base = n * rows;
+                    if (dense[l]) {
+                        int m = offset[l] + (n - start[l]) * columns[l];
+                        for (int k = 0; k < columns[l]; k++) {
+                            double w = matrix[m + k];
+                            if (w == 0d) continue;
+                            int from = (columnStart[l] + k) * rows;
+                            for (int r = r0; r < r1; r++) {
+                                v[base + r] += v[from + r] * w;
+                            }
+                        }
+                    } else {
+                        for (int s = into[n]; s < into[n + 1]; s++) {
+                            double w = weight[s];
+                            int from = source[s] * rows;
+                            for (int r = r0; r < r1; r++) {
+                                v[base + r] += v[from + r] * w;
+                            }
+                        }
+                    }
+                    Activation a = Activation.fromID(activation[n]);
+                    for (int r = r0; r < r1; r++) {
+                        v[base + r] = a.apply(v[base + r], fast);
+                    }
+                }
+            }
+        }
+        
+        double[] outs = new double[rows * outputSize];
+        for (int i = 0; i < outputSize; i++) {
+            if (outputIndex[i] == -1) continue;
+            int base = outputIndex[i] * rows;
+            for (int r = 0; r < rows; r++) {
+                outs[r * outputSize + i] = v[base + r];
+            }
+        }
+        return outs;
+    }
+    
+    /**
+     * @return the number of levels, including the level of input nodes
+     */
+    public int getLevelCount() {
+        return dense.length;
+    }
+    
+    /**
+     * @return the number of levels stored as dense matrices
+     */
+    public int getDenseLevelCount() {
+        int count = 0;
+        for (boolean d : dense) {
+            if (d) count++;
+        }
+        return count;
+    }
+    
+    public int getInputSize() {
+        return inputSize;
+    }
+    
+    public int getOutputSize() {
+        return outputSize;
+    }
+    
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
+    public int getGeneCount() {
+        return geneCount;
+    }
+}
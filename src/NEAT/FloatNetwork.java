@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class is a compiled network that stores its weights and node values as floats instead of doubles. It shares
+ * the layout of the CompiledNetwork it is built from, and gives the same results to within single precision.
+ */
+
+package NEAT;
+
+import java.util.Arrays;
+
+public class FloatNetwork implements NetworkEvaluator {
+    private final int inputSize;
+    private final int outputSize;
+    private final int inputCount;
+    private final int nodeCount;
+    private final int[] inputIndex;
+    private final int biasIndex;
+    private final int[] outputIndex;
+    private final int[] from;
+    private final int[] to;
+    private final float[] weight;
+    private final byte[] activation;
+    private final boolean fast;
+    
+    private static final ThreadLocal<float[][]> scratch = ThreadLocal.withInitial(() -> new float[2][0]);
+    
+    /**
+     * Build a single precision copy of a compiled network. The index arrays are shared with it.
+     * @param c the compiled network
+     */
+    public FloatNetwork(CompiledNetwork c) {
+        inputSize = c.getInputSize();
+        outputSize = c.getOutputSize();
+        inputCount = c.getInputCount();
+        nodeCount = c.getNodeCount();
+        inputIndex = c.getInputIndex();
+        biasIndex = c.getBiasIndex();
+        outputIndex = c.getOutputIndex();
+        from = c.getFrom();
+        to = c.getTo();
+        activation = c.getActivation();
+        fast = c.isFast();
+        double[] w = c.getWeight();
+        weight = new float[w.length];
+        for (int e = 0; e < w.length; e++) {
+            weight[e] = (float) w[e];
+        }
+    }
+    
+    /**
+     * Feed the inputs through the network in single precision, and write the outputs into the provided array
+     * @param ins  the values to feed the network, one per input node
+     * @param outs the array to fill, one value per output node
+     */
+    @Override
+    public void evaluate(double[] ins, double[] outs) {
+        float[] v = buffer(0, nodeCount);
+        for (int i = 0; i < inputSize; i++) {
+            if (inputIndex[i] != -1) v[inputIndex[i]] = (float) ins[i];
+        }
+        if (biasIndex != -1) v[biasIndex] = 1f;
+        
+        for (int n = 0; n < nodeCount; n++) {
+            float out = n < inputCount ? v[n] : (float) Activation.fromID(activation[n]).apply(v[n], fast);
+            v[n] = out;
+            for (int e = from[n]; e < from[n + 1]; e++) {
+                v[to[e]] += out * weight[e];
+            }
+        }
+        
+        for (int i = 0; i < outputSize; i++) {
+            outs[i] = outputIndex[i] != -1 ? v[outputIndex[i]] : 0d;
+        }
+    }
+    
+    /**
+     * Feed many sets of inputs through the network in a single pass, as CompiledNetwork.runBatch does, but in
+     * single precision
+     * @param ins  the inputs of every row, row-major (rows * inputSize values)
+     * @param rows the number of rows in the batch
+     * @return the outputs of every row, row-major (rows * outputSize values)
+     */
+    public double[] runBatch(double[] ins, int rows) {
+        float[] v = buffer(1, nodeCount * rows);
+        for (int i = 0; i < inputSize; i++) {
+            if (inputIndex[i] == -1) continue;
+            int base = inputIndex[i] * rows;
+            for (int r = 0; r < rows; r++) {
+                v[base + r] = (float) ins[r * inputSize + i];
+            }
+        }
+        if (biasIndex != -1) Arrays.fill(v, biasIndex * rows, (biasIndex + 1) * rows, 1f);
+        
+        for (int n = 0; n < nodeCount; n++) {
+            int base = n * rows;
+            if (n >= inputCount) {
+                Activation a = Activation.fromID(activation[n]);
+                for (int r = 0; r < rows; r++) {
+                    v[base + r] = (float) a.apply(v[base + r], fast);
+                }
+            }
+            for (int e = from[n]; e < from[n + 1]; e++) {
+                float w = weight[e];
+                int target = to[e] * rows;
+                for (int r = 0; r < rows; r++) {
+                    v[target + r] += v[base + r] * w;
+                }
+            }
+        }
+        
+        double[] outs = new double[rows * outputSize];
+        for (int i = 0; i < outputSize; i++) {
+            if (outputIndex[i] == -1) continue;
+            int base = outputIndex[i] * rows;
+            for (int r = 0; r < rows; r++) {
+                outs[r * outputSize + i] = v[base + r];
+            }
+        }
+        return outs;
+    }
+    
+    /**
+     * Get this thread's scratch buffer, growing it if it is too small, with the first "size" values cleared
+     * @param which 0 for single evaluations, 1 for batches
+     * @param size  the number of values needed
+     * @return the scratch buffer
+     */
+    private static float[] buffer(int which, int size) {
+        float[][] buffers = scratch.get();
+        if (buffers[which].length < size) {
+            buffers[which] = new float[size];
+        } else {
+            Arrays.fill(buffers[which], 0, size, 0f);
+        }
+        return buffers[which];
+    }
+}
@@ -27,6 +27,7 @@
 
 package NEAT;
 
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class Gene {
@@ -59,6 +60,7 @@ public class Gene {
     
     public Gene copy() {
         Gene g = new Gene(fromNode, toNode, geneID, weight);
+        g.setEnabled(enabled);
         g.setLargestNode(largestNode);
         return g;
     }
@@ -70,11 +72,20 @@ public class Gene {
      * 20% chance of re-enabling this connection IF it is currently disabled
      */
     public void mutateWeight() {
-        double t = ThreadLocalRandom.current().nextDouble();
+        mutateWeight(new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+    }
+    
+    /**
+     * mutate the weight of this gene as mutateWeight() does, drawing from the provided random stream so that the
+     * result can be reproduced
+     * @param random the stream, typically the genome's
+     */
+    public void mutateWeight(SplittableRandom random) {
+        double t = random.nextDouble();
         if (t < 0.05) {
-            weight = ThreadLocalRandom.current().nextDouble(-1, 1);
+            weight = random.nextDouble(-1, 1);
         } else if (t < 0.5) {
-            weight += ThreadLocalRandom.current().nextGaussian() / 30;
+            weight += gaussian(random) / 30;
             if (weight > 1) weight = 1D;
             if (weight < -1) weight = -1D;
         } else if (t > 0.8) {
@@ -84,6 +95,18 @@ public class Gene {
         }
     }
     
+    /**
+     * SplittableRandom has no nextGaussian before Java 17, so draw a standard normal value by the Box-Muller
+     * transform of two uniform values
+     * @param random the stream to draw from
+     * @return a normally distributed value with mean 0 and standard deviation 1
+     */
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+    
     public boolean isEnabled() {
         return enabled;
     }
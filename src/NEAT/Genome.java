@@ -21,23 +21,67 @@
 /*
  * This class represents the neural network itself. It contains all of the information needed to determine how a
  * network will perform. Each network has a constant number of inputs, outputs, and a single bias node. The number of
- *  layers can be updated as new nodes are added to the network.
+ *  layers can be updated as new nodes are added to the network. The order in which nodes operate is kept by their
+ *  depths rather than their layers: new nodes are given a depth between the two nodes they are placed between and
+ *  appended to the network order, which is only sorted again by depth when it is next needed. The nodes and genes are
+ *  kept in chunked lists shared with copies of the genome, and a genome only copies the chunks and the nodes and genes
+ *  it changes. Genes are reached from their nodes through the adjacency, not through each node's output genes, which
+ *  the genome leaves empty (see connectNodes).
  */
 
 package NEAT;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Genome {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final AtomicIntegerFieldUpdater<Genome> CALLS =
+            AtomicIntegerFieldUpdater.newUpdater(Genome.class, "calls");
+    
     private final int inputSize;
     private final int outputSize;
     private int biasNodeID;
     private int layers;
     
-    private ArrayList<Node> nodes;
-    private ArrayList<Gene> genes;
+    private ChunkedList<Node> nodes;
+    private ChunkedList<Gene> genes;
+    private int[] order;
+    private int ordered;
+    private int sorted;
+    private boolean orderShared;
     private ArrayList<Node> network;
+    private CompiledNetwork compiled;
+    private volatile NetworkEvaluator generated;
+    private volatile int calls;
+    private Precision precision = Precision.DOUBLE;
+    private FloatNetwork single;
+    private boolean recurrent;
+    private RecurrentNetwork memory;
+    private boolean dense;
+    private boolean fast;
+    private DenseNetwork matrix;
+    private TopologyCache cache;
+    
+    private long[] geneKeys;
+    private List<Gene> indexedGenes;
+    private long[] nodeKeys;
+    private List<Node> indexedNodes;
+    private Adjacency links;
+    
+    private SplittableRandom random;
+    private int sharedNodes;
+    private BitSet ownedNodes = new BitSet();
+    private int sharedGenes;
+    private BitSet ownedGenes = new BitSet();
+    private volatile long version = VERSIONS.incrementAndGet();
     
     /**
      * Inputs are created with NodeIDs ranging from 0 to inputs+1 (N.I.), with the biasNode being the extra node.
@@ -46,15 +90,27 @@ public class Genome {
      * @param out total number of outputs from the network
      */
     public Genome(int in, int out) {
+        this(in, out, new SplittableRandom());
+    }
+    
+    /**
+     * Create a fully connected genome as Genome(in, out) does, drawing its weights (and everything random it does
+     * from then on) from the provided stream, so that a run seeded the same way evolves the same way
+     * @param in     total number of inputs to the network
+     * @param out    total number of outputs from the network
+     * @param random the stream, typically split from the population's
+     */
+    public Genome(int in, int out, SplittableRandom random) {
         inputSize = in;
         outputSize = out;
+        this.random = random;
         layers = 2;
-        nodes = new ArrayList<>();
-        genes = new ArrayList<>();
-        network = new ArrayList<>();
+        nodes = new ChunkedList<>();
+        genes = new ChunkedList<>();
         
         buildNodes(in, out);
         buildGenes(in, out);
+        sortNetwork();
     }
     
     /**
@@ -82,8 +138,9 @@ public class Genome {
         double w;
         for (int i = 0; i < in + 1; i++) {
             for (int j = in + 1; j < in + out + 1; j++) {
-                w = ThreadLocalRandom.current().nextDouble(-1, 1);
-                genes.add(new Gene(nodes.get(i), nodes.get(j), geneCount, w));
+                w = random.nextDouble(-1, 1);
+                Gene g = new Gene(nodes.get(i), nodes.get(j), geneCount, w);
+                genes.add(g);
                 geneCount++;
             }
         }
@@ -97,10 +154,10 @@ public class Genome {
     public Genome(int in, int out, boolean crossover) {
         inputSize = in;
         outputSize = out;
+        random = new SplittableRandom();
         
-        nodes = new ArrayList<>();
-        genes = new ArrayList<>();
-        network = new ArrayList<>();
+        nodes = new ChunkedList<>();
+        genes = new ChunkedList<>();
     }
     
     public History buildHistory() {
@@ -108,28 +165,121 @@ public class Genome {
     }
     
     /**
+     * Copy this genome in constant time. The copy shares this genome's nodes, genes, network order, indexes, adjacency
+     * and compiled network until either of them mutates. A mutating genome then copies only the chunks of its lists
+     * (see ChunkedList) and the nodes and genes it is about to change: a weight mutation copies one gene, and a new
+     * node or connection copies the nodes whose layer or depth it changes, together with the genes into and out of
+     * them. Anything that changes the nodes or genes of either genome other than through mutateGenome will change both.
      * @return an equivalent copy of this genome
      */
     public Genome copy() {
-        Genome g = new Genome(inputSize, outputSize);
+        Genome g = new Genome(inputSize, outputSize, true);
+        g.setRandom(random.split());
         g.setLayers(layers);
         g.setBiasNodeID(biasNodeID);
-        g.setGenes(genes);
-        g.setNodes(nodes);
-        g.setNetwork(network);
+        g.setPrecision(precision);
+        g.setRecurrent(recurrent);
+        g.setDense(dense);
+        g.setFast(fast);
+        g.setCache(cache);
+        g.nodes = nodes.share();
+        g.genes = genes.share();
+        g.shareOrder(this);
+        g.compiled = compiled;
+        g.generated = generated;
+        g.single = single;
+        g.matrix = matrix;
+        g.geneKeys = geneKeys;
+        g.indexedGenes = indexedGenes == genes ? g.genes : null;
+        g.nodeKeys = nodeKeys;
+        g.indexedNodes = indexedNodes == nodes ? g.nodes : null;
+        if (links != null && links.isCurrent(this)) g.links = links.share(g.nodes, g.genes);
+        g.version = version;
+        shareNodes();
+        shareGenes();
+        g.shareNodes();
+        g.shareGenes();
         return g;
     }
     
+    /**
+     * mark every node of this genome as possibly shared with another genome
+     */
+    private void shareNodes() {
+        sharedNodes = nodes.size();
+        ownedNodes = new BitSet();
+    }
+    
+    /**
+     * mark every gene of this genome as possibly shared with another genome
+     */
+    private void shareGenes() {
+        sharedGenes = genes.size();
+        ownedGenes = new BitSet();
+    }
+    
+    /**
+     * Take on the network order of another genome with the same nodes in the same places, sharing it until one of
+     * them changes it
+     * @param g the genome to share the order of
+     */
+    private void shareOrder(Genome g) {
+        order = g.order;
+        ordered = g.ordered;
+        sorted = g.sorted;
+        network = g.network;
+        orderShared = true;
+        g.orderShared = true;
+    }
+    
+    /**
+     * @param i the index of a gene
+     * @return that gene, after replacing it with a copy of its own if it may be shared with another genome, so that
+     * it can be changed without changing theirs
+     */
+    private Gene ownGene(int i) {
+        if (i < sharedGenes && !ownedGenes.get(i)) {
+            genes.set(i, genes.get(i).copy());
+            ownedGenes.set(i);
+        }
+        return genes.get(i);
+    }
+    
+    /**
+     * Replace a node that may be shared with another genome by a copy of its own, so that its layer and depth can be
+     * changed without changing theirs. Every gene into or out of the node (found through the adjacency) is replaced
+     * too, by one that leads to the copy instead.
+     * @param i the index of a node
+     * @return that node, now owned by this genome
+     */
+    private Node ownNode(int i) {
+        Node n = nodes.get(i);
+        if (i >= sharedNodes || ownedNodes.get(i)) return n;
+        Node c = n.copy();
+        c.clearOutputGenes();
+        nodes.set(i, c);
+        ownedNodes.set(i);
+        network = null;
+        for (int k : links().incident(i)) {
+            Gene g = genes.get(k);
+            Node from = g.getFromNode().getID() == c.getID() ? c : g.getFromNode();
+            Node to = g.getToNode().getID() == c.getID() ? c : g.getToNode();
+            Gene r = new Gene(from, to, g.getGeneID(), g.getWeight());
+            r.setEnabled(g.isEnabled());
+            r.setLargestNode(g.isLargestNode());
+            genes.set(k, r);
+            ownedGenes.set(k);
+        }
+        return c;
+    }
+    
     /**
      * Find the index of a given node
      * @param n node to search for
      * @return the index of that node in the nodes array, or -1 if it doesn't exist
      */
     public int getNode(Node n) {
-        for (Node node : nodes) {
-            if (node.getID() == n.getID()) return nodes.indexOf(node);
-        }
-        return -1;
+        return nodeIndex(n.getID());
     }
     
     /**
@@ -138,247 +288,584 @@ public class Genome {
      * @return the index of that gene in the genes array, or -1 if it doesn't exist
      */
     public int getGene(Gene g) {
-        for (Gene gene : genes) {
-            if (gene.getGeneID() == g.getGeneID()) return genes.indexOf(gene);
+        return geneIndex(g.getGeneID());
+    }
+    
+    /**
+     * Find a gene by its innovation number through the gene index, which lists every gene's ID and position sorted
+     * by ID. Genes and nodes are only ever appended to their lists, so the indexes are rebuilt whenever a list has
+     * been replaced or has changed size since it was indexed. Copies take on the indexes along with the lists.
+     * @param ID the geneID to look for
+     * @return the index of the first gene in the genes list with that ID, or -1 if there isn't one
+     */
+    private int geneIndex(int ID) {
+        return find(geneKeys(), ID);
+    }
+    
+    /**
+     * @param keys an index of IDs and positions, sorted
+     * @param ID   the ID to look for
+     * @return the lowest position with that ID, or -1 if there isn't one
+     */
+    private static int find(long[] keys, int ID) {
+        long key = (long) ID << 32;
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < keys.length && (int) (keys[low] >> 32) == ID ? (int) keys[low] : -1;
+    }
+    
+    /**
+     * @return the gene index, each gene's ID shifted into the high half of a long with its position in the low
+     * half, sorted by ID; built again first if the genes have changed since it was built
+     */
+    long[] geneKeys() {
+        long[] keys = geneKeys;
+        if (keys == null || indexedGenes != genes || keys.length != genes.size()) keys = indexGenes();
+        return keys;
+    }
+    
+    /**
+     * @return the gene index, rebuilt from the genes list: each gene's ID in the high half of a long and its position
+     * in the low half, sorted
+     */
+    private long[] indexGenes() {
+        List<Gene> list = genes;
+        long[] keys = new long[list.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) list.get(i).getGeneID() << 32 | i;
+        }
+        Arrays.sort(keys);
+        indexedGenes = list;
+        geneKeys = keys;
+        return keys;
+    }
+    
+    /**
+     * @param ID the nodeID to look for
+     * @return the index of the first node in the nodes list with that ID, or -1 if there isn't one
+     */
+    private int nodeIndex(int ID) {
+        return find(nodeKeys(), ID);
+    }
+    
+    /**
+     * @return the node index, each node's ID shifted into the high half of a long with its position in the low half,
+     * sorted by ID like the gene index. Node IDs come from a counter shared by the whole population, so they are far
+     * too sparse to index an array by directly. Nodes appended since the index was built are inserted into it in
+     * place; it is only built again from scratch once the nodes list has been replaced.
+     */
+    private long[] nodeKeys() {
+        long[] keys = nodeKeys;
+        List<Node> list = nodes;
+        if (keys != null && indexedNodes == list && keys.length == list.size()) return keys;
+        if (keys == null || indexedNodes != list || keys.length > list.size()) {
+            keys = new long[list.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = (long) list.get(i).getID() << 32 | i;
+            }
+            Arrays.sort(keys);
+        } else {
+            int count = keys.length;
+            keys = Arrays.copyOf(keys, list.size());
+            for (int i = count; i < keys.length; i++) {
+                long key = (long) list.get(i).getID() << 32 | i;
+                int at = Arrays.binarySearch(keys, 0, i, key);
+                at = at < 0 ? -at - 1 : at;
+                System.arraycopy(keys, at, keys, at + 1, i - at);
+                keys[at] = key;
+            }
         }
-        return -1;
+        indexedNodes = list;
+        nodeKeys = keys;
+        return keys;
     }
     
     /**
      * Read in the inputs and set those inputs to the input value for each node in the first layer, which all have a
      * nodeID of 0->inputSize inclusive (the last node is biasNode, so set its value = 1). Then propagate the network
-     * and collect the outputs (nodeID of inputSize+1->inputs+outputs+1 exclusive).
+     * and collect the outputs (nodeID of inputSize+1->inputs+outputs+1 exclusive). The propagation runs on the
+     * compiled form of the network, which is rebuilt here if the genome has changed since it was last built, or on a
+     * generated straight-line network once this genome has been run often enough to be worth generating one and the
+     * background thread has finished generating it.
      * @param ins the values to feed the network
      * @return the outputs of each output node
      */
     public double[] runNetwork(double[] ins) {
         if (ins.length != inputSize) return null;
-        for (int i = 0; i < inputSize; i++) {
-            nodes.get(i).addInput(ins[i]);
+        double[] outs = new double[outputSize];
+        evaluator().evaluate(ins, outs);
+        return outs;
+    }
+    
+    /**
+     * Run the network as runNetwork does, but write the outputs into a caller-supplied array so that nothing is
+     * allocated. Intended for game loops that run every player on every tick.
+     * @param ins  the values to feed the network
+     * @param outs the array to fill with the outputs of each output node
+     * @return false (leaving outs untouched) if either array is the wrong size
+     */
+    public boolean evaluate(double[] ins, double[] outs) {
+        if (ins.length != inputSize || outs.length != outputSize) return false;
+        evaluator().evaluate(ins, outs);
+        return true;
+    }
+    
+    /**
+     * @return the fastest available evaluator for the current network, building the compiled network if needed. In
+     * single precision, a float copy of the compiled network is used instead, and otherwise a dense genome uses a copy
+     * laid out level by level. Recurrent genomes always use their recurrent network, which keeps its state between
+     * calls.
+     */
+    private NetworkEvaluator evaluator() {
+        if (recurrent) {
+            if (compiled == null) compileNetwork();
+            if (memory == null) memory = new RecurrentNetwork(this);
+            return memory;
         }
-        nodes.get(inputSize).addInput(1d);
-        for (Node n : network) {
-            n.computeOut();
+        if (compiled == null) compileNetwork();
+        if (precision == Precision.FLOAT) {
+            if (single == null) single = new FloatNetwork(compiled);
+            return single;
         }
-        double[] outs = new double[outputSize];
-        for (int i = inputSize + 1; i < inputSize + outputSize + 1; i++) {
-            outs[i - (inputSize + 1)] = nodes.get(i).getOutputs();
+        if (dense) {
+            if (matrix == null) matrix = new DenseNetwork(compiled);
+            return matrix;
         }
-        for (Node n : nodes) {
-            n.clearValues();
+        NetworkEvaluator e = generated;
+        if (e != null) return e;
+        if (NetworkGenerator.isEnabled() && CALLS.incrementAndGet(this) == NetworkGenerator.HOT_CALLS) {
+            generateLater(compiled);
         }
-        return outs;
+        return compiled;
+    }
+    
+    /**
+     * Have a straight-line network generated in the background, and use it once it is ready unless the genome has
+     * changed in the meantime
+     * @param c the compiled network to generate it from
+     */
+    private void generateLater(CompiledNetwork c) {
+        long v = version;
+        NetworkGenerator.generateLater(c).thenAccept(e -> {
+            if (e == null || version != v) return;
+            generated = e;
+            if (version != v) generated = null;
+        });
+    }
+    
+    /**
+     * throw away the compiled (and generated) network, as the genome has changed since they were built, and give the
+     * genome a new version
+     */
+    private void invalidate() {
+        version = VERSIONS.incrementAndGet();
+        compiled = null;
+        generated = null;
+        single = null;
+        memory = null;
+        matrix = null;
+        calls = 0;
+    }
+    
+    /**
+     * Run the network over many sets of inputs at once, as runNetwork would for each of them in turn. For a
+     * recurrent genome the rows are consecutive time steps, so they are stepped through one at a time.
+     * @param ins the inputs of every row, row-major (rows * inputSize values)
+     * @param rows the number of rows in the batch
+     * @return the outputs of every row, row-major (rows * outputSize values), or null if the inputs don't fit
+     */
+    public double[] runNetworkBatch(double[] ins, int rows) {
+        if (rows < 0 || ins.length != rows * inputSize) return null;
+        if (recurrent) {
+            double[] outs = new double[rows * outputSize];
+            double[] in = new double[inputSize];
+            double[] out = new double[outputSize];
+            for (int r = 0; r < rows; r++) {
+                System.arraycopy(ins, r * inputSize, in, 0, inputSize);
+                evaluator().evaluate(in, out);
+                System.arraycopy(out, 0, outs, r * outputSize, outputSize);
+            }
+            return outs;
+        }
+        if (compiled == null) compileNetwork();
+        if (precision == Precision.FLOAT) {
+            if (single == null) single = new FloatNetwork(compiled);
+            return single.runBatch(ins, rows);
+        }
+        if (dense) {
+            if (matrix == null) matrix = new DenseNetwork(compiled);
+            return matrix.runBatch(ins, rows);
+        }
+        return compiled.runBatch(ins, rows);
+    }
+    
+    /**
+     * Run the network over many sets of inputs at once, as runNetwork would for each of them in turn.
+     * @param ins one array of inputs per row
+     * @return one array of outputs per row, or null if any row doesn't have inputSize values
+     */
+    public double[][] runNetworkBatch(double[][] ins) {
+        int rows = ins.length;
+        double[] flat = new double[rows * inputSize];
+        for (int r = 0; r < rows; r++) {
+            if (ins[r].length != inputSize) return null;
+            System.arraycopy(ins[r], 0, flat, r * inputSize, inputSize);
+        }
+        double[] outs = runNetworkBatch(flat, rows);
+        double[][] result = new double[rows][];
+        for (int r = 0; r < rows; r++) {
+            result[r] = Arrays.copyOfRange(outs, r * outputSize, (r + 1) * outputSize);
+        }
+        return result;
     }
     
     /**
      * mutate the genome, with the population history as reference to create new nodes or connections.
-     * @param h the population history
-     * @return the "new" population history, which may or may not be modified
+     * @param h the population evolution history
+     * @return the updated evolution history
      */
     public History mutateGenome(History h) {
-        double rand = ThreadLocalRandom.current().nextDouble();
-        History newH;
+        Mutation m = proposeMutation();
+        if (m != null) {
+            m.assign(h);
+            applyMutation(m);
+        }
+        return h;
+    }
+    
+    /**
+     * The first half of mutateGenome, which needs nothing but this genome: a weight mutation is made straight
+     * away, while a new node or connection is only chosen, to be given its IDs by the history and then made by
+     * applyMutation. Different genomes can propose at the same time, and the genome must not be changed in between.
+     * @return the chosen structural change, or null if the mutation only changed a weight
+     */
+    public Mutation proposeMutation() {
+        invalidate();
+        double rand = random.nextDouble();
         if (rand < 0.03) {
-            newH = addNode(h);
+            return proposeNode();
         } else if (rand < 0.13) {
-            newH = addConnection(h);
-        } else {
-            int r = ThreadLocalRandom.current().nextInt(genes.size());
-            genes.get(r).mutateWeight();
-            newH = h;
+            return proposeConnection();
         }
-        return newH;
+        int r = random.nextInt(genes.size());
+        ownGene(r).mutateWeight(random);
+        return null;
     }
     
     /**
-     * Add a new node by randomly selecting a gene, disabling it, and creating a new node between the previous
-     * fromNode and toNode. Check along the way to determine if this is a unique mutation. If it is, generate new
-     * info, otherwise take existing info
-     * @param h the population evolution history
-     * @return the updated evolution history
+     * The second half of mutateGenome: make a change proposed by this genome, once the history has assigned its IDs
+     * @param m a mutation returned by proposeMutation, with its IDs assigned
      */
-    private History addNode(History h) {
-        Gene g = genes.get(ThreadLocalRandom.current().nextInt(genes.size()));
-        while (!g.isEnabled()) {
-            g = genes.get(ThreadLocalRandom.current().nextInt(genes.size()));
-        }
-        int ID = h.containsNodeInnovation(g);
-        if (ID == -1) {
-            int newID = h.getNextNodeID();
-            int newLayer = g.getFromNode().getLayer() + 1;
-            if (newLayer == g.getToNode().getLayer()) {
-                incrementLayers(newLayer);
-            }
-            Node newNode = new Node(newLayer, newID);
-            newNode.setReplacedGeneID(g.getGeneID());
-            int newGID = h.getNextGeneID();
-            double w = ThreadLocalRandom.current().nextDouble(-1, 1);
-            Gene g1 = new Gene(g.getFromNode(), newNode, newGID, 1d);
-            Gene g2 = new Gene(newNode, g.getToNode(), newGID + 1, g.getWeight());
-            g1.setLargestNode(true);
-            g.toggleEnabled();
-            nodes.add(newNode);
-            genes.add(g1);
-            genes.add(g2);
-            newNode.addGeneConnection(g2);
-            h.addNodeInnovation(newNode, g1, g2);
-            return h;
+    public void applyMutation(Mutation m) {
+        if (m.isNode()) {
+            addNode(m.getGeneIndex(), m.getInnovation());
         } else {
-            int newLayer = g.getFromNode().getLayer() + 1;
-            if (newLayer == g.getToNode().getLayer()) {
-                incrementLayers(newLayer);
+            addConnection(m);
+        }
+    }
+    
+    /**
+     * Choose a random enabled gene to be replaced by a new node
+     * @return the proposed change
+     */
+    private Mutation proposeNode() {
+        int i = random.nextInt(genes.size());
+        while (!genes.get(i).isEnabled()) {
+            i = random.nextInt(genes.size());
+        }
+        return new Mutation(genes.get(i), i);
+    }
+    
+    /**
+     * Add a new node by disabling a gene and creating a new node between the previous fromNode and toNode. The
+     * history has given the node and its two genes the same IDs as any other genome that has replaced the same gene.
+     * If this genome already has that node (because the gene was replaced once before and then re-enabled), nothing
+     * changes.
+     * @param i          the index of the gene being replaced
+     * @param innovation the IDs of the new node and genes
+     */
+    private void addNode(int i, History.NodeInnovation innovation) {
+        if (containsNode(innovation.getNodeID())) {
+            return;
+        }
+        links();
+        int a = nodeIndex(genes.get(i).getFromNode().getID());
+        int b = nodeIndex(genes.get(i).getToNode().getID());
+        Node n = placeNode(a, b, genes.get(i).getGeneID(), innovation.getNodeID());
+        int p = nodes.size() - 1;
+        Gene g = ownGene(i);
+        Gene g1 = new Gene(nodes.get(a), n, innovation.getInID(), 1d);
+        Gene g2 = new Gene(n, nodes.get(b), innovation.getOutID(), g.getWeight());
+        g.toggleEnabled();
+        genes.add(g1);
+        links.connect(a, p);
+        genes.add(g2);
+        links.connect(p, b);
+        if (n.getDepth() < nodes.get(b).getDepth()) {
+            raiseLayer(b, n.getLayer() + 1);
+        }
+    }
+    
+    /**
+     * Keep the layers consistent after a new gene into a node: raise the node to at least the provided layer, and
+     * then every node it leads to (through a gene to a deeper node) far enough that each such gene still leads to a
+     * higher layer. Only the nodes downstream of the new gene whose layer was too low are visited, and only those are
+     * copied if they are shared with another genome.
+     * @param i     the index of the node the new gene leads to
+     * @param layer the lowest layer the node may be in
+     */
+    private void raiseLayer(int i, int layer) {
+        if (nodes.get(i).getLayer() >= layer) return;
+        ownNode(i).setLayer(layer);
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        pending.add(i);
+        while (!pending.isEmpty()) {
+            int k = pending.poll();
+            Node m = nodes.get(k);
+            if (m.getLayer() >= layers) {
+                layers = m.getLayer() + 1;
             }
-            Node n = new Node(newLayer, ID);
-            n.setReplacedGeneID(g.getGeneID());
-            int g1ID = h.getIDBeforeNode(n);
-            int g2ID = h.getIDAfterNode(n);
-            double w = ThreadLocalRandom.current().nextDouble(-1, 1);
-            Gene g1 = new Gene(g.getFromNode(), n, g1ID, 1);
-            Gene g2 = new Gene(n, g.getToNode(), g2ID, w);
-            g.toggleEnabled();
-            nodes.add(n);
-            genes.add(g1);
-            genes.add(g2);
-            n.addGeneConnection(g2);
-            return h;
-        }
-    }
-    
-    /**
-     * increase the layer of all nodes in an given layer or above
-     * @param l the given layer
-     */
-    private void incrementLayers(int l) {
-        for (Node n : nodes) {
-            if (n.getLayer() >= l) {
-                n.setLayer(n.getLayer() + 1);
+            for (int j : links.successors(k)) {
+                Node to = nodes.get(j);
+                if (to.getDepth() > m.getDepth() && to.getLayer() <= m.getLayer()) {
+                    ownNode(j).setLayer(m.getLayer() + 1);
+                    pending.add(j);
+                }
             }
         }
     }
     
     /**
-     * Add a new connection by randomly selecting two nodes and creating a new connection between them. Check during
-     * this process, whether this is a new innovation or if this innovation already exists
-     * @param h the evolutionary history
-     * @return the new/updated evolutionary history
+     * @param ID a nodeID
+     * @return whether this genome already has a node with that ID, e.g. because the gene being replaced was
+     * replaced once before and then re-enabled
      */
-    private History addConnection(History h) {
-        if (isFull()) {
-            return addNode(h);
+    private boolean containsNode(int ID) {
+        return nodeIndex(ID) != -1;
+    }
+    
+    /**
+     * Create a node to replace a gene, with a depth halfway between the depths of the gene's from- and to-Node, and
+     * add it to the nodes, the adjacency and the end of the network order. If those depths are too close together for
+     * a double to fit between them, the depths of every node are spread out again first. The node goes in the layer
+     * after the from-Node (or layer 1, if the gene leads back to a shallower node); addNode then raises the nodes after
+     * it.
+     * @param a        the index of the gene's from-Node
+     * @param b        the index of the gene's to-Node
+     * @param replaced the geneID of the gene
+     * @param ID       the nodeID of the new node
+     * @return the new node
+     */
+    private Node placeNode(int a, int b, int replaced, int ID) {
+        Node n = new Node(1, ID, replaced);
+        double x = nodes.get(a).getDepth();
+        double y = nodes.get(b).getDepth();
+        double depth = (x + y) / 2;
+        if (x != y && (depth == x || depth == y)) {
+            spreadDepths();
+            x = nodes.get(a).getDepth();
+            y = nodes.get(b).getDepth();
+            depth = (x + y) / 2;
         }
-        
-        Node a = nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
-        Node b = nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
-        
-        while (a.isConnected(b)) {
-            a = nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
-            b = nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
+        n.setDepth(depth);
+        if (x < depth) {
+            n.setLayer(nodes.get(a).getLayer() + 1);
         }
-        
-        int ID = -2;
-        if (a.getLayer() > b.getLayer()) {
-            ID = h.containsGeneInnovation(b, a);
-        } else {
-            ID = h.containsGeneInnovation(a, b);
+        if (n.getLayer() >= layers) {
+            layers = n.getLayer() + 1;
         }
-        
-        if (ID == -1) {
-            int newGID = h.getNextGeneID();
-            double w = ThreadLocalRandom.current().nextDouble(-1, 1);
-            Gene g;
-            if (a.getLayer() > b.getLayer()) {
-                g = new Gene(b, a, newGID, w);
-            } else {
-                g = new Gene(a, b, newGID, w);
+        nodes.add(n);
+        links.addNode();
+        appendOrder(nodes.size() - 1);
+        return n;
+    }
+    
+    /**
+     * Give the hidden nodes evenly spaced depths between the inputs (0) and outputs (1), keeping their order and
+     * keeping nodes that shared a depth together. This only happens once repeated halving has run out of precision,
+     * so its cost is spread over many new nodes.
+     */
+    private void spreadDepths() {
+        orderNetwork();
+        int distinct = 0;
+        double last = 0;
+        for (int k = 0; k < ordered; k++) {
+            double d = nodes.get(order[k]).getDepth();
+            if (d > 0 && d < 1 && d != last) {
+                distinct++;
+                last = d;
             }
-            genes.add(g);
-            g.getFromNode().addGeneConnection(g);
-            h.addGeneInnovation(g);
-        } else {
-            double w = ThreadLocalRandom.current().nextDouble(-1, 1);
-            Gene g;
-            if (a.getLayer() > b.getLayer()) {
-                g = new Gene(b, a, ID, w);
-            } else {
-                g = new Gene(a, b, ID, w);
+        }
+        int i = 0;
+        last = 0;
+        for (int k = 0; k < ordered; k++) {
+            double d = nodes.get(order[k]).getDepth();
+            if (d > 0 && d < 1) {
+                if (d != last) {
+                    i++;
+                    last = d;
+                }
+                double spread = (double) i / (distinct + 1);
+                if (spread != d) ownNode(order[k]).setDepth(spread);
             }
-            genes.add(g);
-            g.getFromNode().addGeneConnection(g);
         }
-        return h;
     }
     
     /**
-     * @return whether or not there is the possibility to add a new connection to the network
+     * Choose two unconnected nodes for a new connection. Connections normally run from the shallower node to the
+     * deeper one, but a recurrent genome may connect any node to any non-input node (including itself) in the
+     * direction chosen. The pair is picked directly from the pairs the adjacency knows to be free, so this takes time
+     * proportional to the number of nodes however full the genome is. A genome with no free pairs proposes a new
+     * node instead.
+     * @return the proposed change
      */
-    private boolean isFull() {
-        for (Node n : nodes) {
-            int outputSize = n.getOutputGenes().size();
-            int possible = getPossible(n.getLayer());
-            if (outputSize < possible) {
-                return false;
-            }
+    private Mutation proposeConnection() {
+        if (isFull()) {
+            return proposeNode();
         }
-        return true;
+        
+        int[] pair = links.pick(random.nextInt(links.getFree()));
+        Node a = nodes.get(pair[0]);
+        Node b = nodes.get(pair[1]);
+        if (!recurrent && a.getDepth() > b.getDepth()) {
+            return new Mutation(b, a, pair[1], pair[0]);
+        }
+        return new Mutation(a, b, pair[0], pair[1]);
     }
     
     /**
-     * For a given layer level, determine the number of nodes that are above that layer level
-     * @param l The given layer leve
-     * @return the number of nodes above that layer level
+     * Add a new connection between the nodes of a proposal, with the geneID the history gave it and a random weight
+     * @param m the proposed connection
      */
-    private int getPossible(int l) {
-        int count = 0;
-        for (Node n : nodes) {
-            if (n.getLayer() > l) {
-                count++;
-            }
+    private void addConnection(Mutation m) {
+        Node from = nodes.get(m.getFromIndex());
+        Node to = nodes.get(m.getToIndex());
+        Gene g = new Gene(from, to, m.getGeneID(), random.nextDouble(-1, 1));
+        genes.add(g);
+        links.connect(m.getFromIndex(), m.getToIndex());
+        if (from.getDepth() < to.getDepth()) {
+            raiseLayer(m.getToIndex(), from.getLayer() + 1);
         }
-        return count;
+    }
+    
+    /**
+     * @return whether or not there is the possibility to add a new connection to the network
+     */
+    private boolean isFull() {
+        return links().getFree() == 0;
+    }
+    
+    /**
+     * @return the adjacency, built first if the genome has been changed from outside since it was last up to date
+     */
+    private Adjacency links() {
+        if (links == null || !links.isCurrent(this)) links = new Adjacency(this);
+        return links;
+    }
+    
+    /**
+     * @return the adjacency this genome keeps up to date, or null if it has none yet (it is built the first time the
+     * genome chooses a new connection, and shared with copies and children from then on)
+     */
+    Adjacency getLinks() {
+        return links;
     }
     
     /**
      * Create a new genome that is a crossover of the current genome and a provided genome. Slight preference is
      * given to genes from the current genome, presumed to have the higher fitness. Any non-matching genes in the
      * current genome are directly inherited from the current genome. The node map/network is inhereted from the
-     * current genome.
+     * current genome. The child shares the current genome's nodes and both parents' genes, in the same way as copy,
+     * except for a gene from the provided genome that leads between different node objects than the current genome's
+     * gene, which is replaced by one leading between the current genome's nodes. Matching genes are found in a single
+     * pass over both gene indexes, which are sorted by ID, and the child's index is the current genome's, as the
+     * child's genes have the same IDs in the same positions.
      */
     public Genome crossOver(Genome b) {
         Genome child = new Genome(inputSize, outputSize, true);
-        Node temp;
-        Gene tempG;
-        for (Node n : nodes) {
-            temp = n.copy();
-            child.getNodes().add(temp);
-        }
-        for (Gene g : genes) {
-            int bLoc = b.matchingGene(g);
-            if (bLoc != -1) {
-                Gene bGene = b.getGenes().get(bLoc);
-                double rand = ThreadLocalRandom.current().nextDouble();
-                if (rand < 0.55) {
-                    tempG = g.copy();
-                } else {
-                    tempG = bGene.copy();
+        long[] aKeys = geneKeys();
+        long[] bKeys = b.geneKeys();
+        Gene[] picked = new Gene[aKeys.length];
+        BitSet own = new BitSet();
+        int j = 0;
+        for (long key : aKeys) {
+            int ID = (int) (key >> 32);
+            while (j < bKeys.length && (int) (bKeys[j] >> 32) < ID) {
+                j++;
+            }
+            Gene g = genes.get((int) key);
+            if (j < bKeys.length && (int) (bKeys[j] >> 32) == ID) {
+                double rand = random.nextDouble();
+                if (rand >= 0.55) {
+                    Gene o = b.genes.get((int) bKeys[j]);
+                    if (o.getFromNode() != g.getFromNode() || o.getToNode() != g.getToNode()) {
+                        Gene r = new Gene(g.getFromNode(), g.getToNode(), o.getGeneID(), o.getWeight());
+                        r.setEnabled(o.isEnabled());
+                        r.setLargestNode(o.isLargestNode());
+                        o = r;
+                        own.set((int) key);
+                    }
+                    g = o;
                 }
-                child.getGenes().add(tempG);
-            } else {
-                tempG = g.copy();
-                child.getGenes().add(tempG);
             }
+            picked[(int) key] = g;
         }
-        child.clearNodeOutputs();
-        child.connectNodes();
-        child.buildNetwork();
+        child.genes = new ChunkedList<>(Arrays.asList(picked));
+        child.shareGenes();
+        child.ownedGenes = own;
+        child.geneKeys = aKeys;
+        child.indexedGenes = child.genes;
+        child.setRandom(random.split());
+        child.setLayers(layers);
+        child.setBiasNodeID(biasNodeID);
+        child.setPrecision(precision);
+        child.setRecurrent(recurrent);
+        child.setDense(dense);
+        child.setFast(fast);
+        child.setCache(cache);
+        child.nodes = nodes.share();
+        child.nodeKeys = nodeKeys();
+        child.indexedNodes = child.nodes;
+        child.shareOrder(this);
+        if (links != null && links.isCurrent(this)) child.links = links.share(child.nodes, child.genes);
+        child.shareNodes();
+        shareNodes();
+        shareGenes();
+        b.shareGenes();
+        child.compileNetwork();
         return child;
     }
     
-    public ArrayList<Node> getNodes() {
+    /**
+     * @return a number that changes whenever this genome does, and that no other genome has unless it is an
+     * unchanged copy of this one. Mutations and the setters change it; changes made directly to the objects in the
+     * lists do not, so they must be followed by a setter such as setGenes (or buildNetwork).
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    public List<Node> getNodes() {
         return nodes;
     }
     
-    public void setNodes(ArrayList<Node> nodes) {
-        this.nodes = nodes;
+    /**
+     * @param nodes the nodes, which are copied into a list of the genome's own
+     */
+    public void setNodes(List<Node> nodes) {
+        this.nodes = new ChunkedList<>(nodes);
+        shareNodes();
+        order = null;
+        network = null;
+        invalidate();
     }
     
     /**
@@ -388,22 +875,25 @@ public class Genome {
      * @return the index of the provided gene in this genome ("genes" list), or -1 if there isn't a match.
      */
     public int matchingGene(Gene g) {
-        for (Gene gene : genes) {
-            if (gene.getGeneID() == g.getGeneID()) return genes.indexOf(gene);
-        }
-        return -1;
+        return geneIndex(g.getGeneID());
     }
     
-    public ArrayList<Gene> getGenes() {
+    public List<Gene> getGenes() {
         return genes;
     }
     
-    public void setGenes(ArrayList<Gene> genes) {
-        this.genes = genes;
+    /**
+     * @param genes the genes, which are copied into a list of the genome's own
+     */
+    public void setGenes(List<Gene> genes) {
+        this.genes = new ChunkedList<>(genes);
+        shareGenes();
+        invalidate();
     }
     
     /**
-     * disconnect all output genes from each node, to allow for rebuilding of the network
+     * disconnect all output genes from each node, to allow for rebuilding of the network. The nodes may be shared with
+     * copies of this genome.
      */
     public void clearNodeOutputs() {
         for (Node node : nodes) {
@@ -412,7 +902,9 @@ public class Genome {
     }
     
     /**
-     * rebuild the connections for each node in the network
+     * rebuild the connections for each node in the network. The genome itself never uses a node's output genes and
+     * leaves them empty, so that it can copy a node without copying its genes; this fills them in for callers that
+     * walk the network node by node.
      */
     public void connectNodes() {
         for (Gene gene : genes) {
@@ -422,17 +914,95 @@ public class Genome {
     
     /**
      * create the network array, which lists nodes in the order in which they need to operate through the netwrok
-     * (layer 0, then layer 1, etc.)
+     * (by increasing depth), and compile it for runNetwork
      */
     public void buildNetwork() {
-        network.clear();
-        for (int i = 0; i < layers; i++) {
-            for (Node n : nodes) {
-                if (n.getLayer() == i) {
-                    network.add(n);
+        sortNetwork();
+        invalidate();
+        compileNetwork();
+    }
+    
+    /**
+     * rebuild the network order from scratch, sorting every node by depth (nodes of equal depth keep their order in
+     * the nodes list)
+     */
+    private void sortNetwork() {
+        Integer[] positions = new Integer[nodes.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, Comparator.comparingDouble(i -> nodes.get(i).getDepth()));
+        order = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            order[i] = positions[i];
+        }
+        ordered = order.length;
+        sorted = order.length;
+        orderShared = false;
+        network = null;
+    }
+    
+    /**
+     * bring the network order up to date. The order lists the position of every node in the nodes list, and nodes
+     * appended since it was last sorted are merged into place in a new array, as the old one may be shared with copies
+     * of this genome. This takes about linear time, as the rest of the order is already sorted; a node goes after every
+     * node of the same depth, as it was added later.
+     */
+    private void orderNetwork() {
+        if (order == null || ordered != nodes.size()) {
+            sortNetwork();
+        } else if (sorted < ordered) {
+            Integer[] added = new Integer[ordered - sorted];
+            for (int i = 0; i < added.length; i++) {
+                added[i] = order[sorted + i];
+            }
+            Arrays.sort(added, Comparator.comparingDouble(i -> nodes.get(i).getDepth()));
+            int[] merged = new int[order.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < sorted && j < added.length) {
+                if (nodes.get(order[i]).getDepth() <= nodes.get(added[j]).getDepth()) {
+                    merged[k++] = order[i++];
+                } else {
+                    merged[k++] = added[j++];
                 }
             }
+            while (i < sorted) {
+                merged[k++] = order[i++];
+            }
+            while (j < added.length) {
+                merged[k++] = added[j++];
+            }
+            order = merged;
+            sorted = ordered;
+            orderShared = false;
+            network = null;
+        }
+    }
+    
+    /**
+     * add the last node to the end of the network order, if the order holds every node before it
+     * @param p the position of the node in the nodes list
+     */
+    private void appendOrder(int p) {
+        if (order == null || ordered != p) return;
+        if (orderShared || ordered == order.length) {
+            order = Arrays.copyOf(order, Math.max(ordered * 2, 8));
+            orderShared = false;
         }
+        order[ordered++] = p;
+        network = null;
+    }
+    
+    /**
+     * compile the current network order for runNetwork, sharing the topology of any structurally identical genome
+     * in the cache if this genome has one. Unlike buildNetwork, the network order is only rebuilt if it isn't being
+     * kept up to date, and otherwise just has any new nodes sorted into place.
+     */
+    private void compileNetwork() {
+        orderNetwork();
+        compiled = cache != null ? cache.compile(this) : new CompiledNetwork(this);
     }
     
     @Override
@@ -487,11 +1057,137 @@ public class Genome {
         this.layers = layers;
     }
     
+    public CompiledNetwork getCompiled() {
+        return compiled;
+    }
+    
+    public NetworkEvaluator getGenerated() {
+        return generated;
+    }
+    
+    public Precision getPrecision() {
+        return precision;
+    }
+    
+    /**
+     * Evaluate this genome's network in the provided precision from now on
+     * @param precision the precision, typically chosen by the population
+     */
+    public void setPrecision(Precision precision) {
+        this.precision = precision;
+        single = null;
+    }
+    
+    public SplittableRandom getRandom() {
+        return random;
+    }
+    
+    /**
+     * @param random the stream every random choice this genome makes is drawn from. Copies and children are given
+     *               streams split from it.
+     */
+    public void setRandom(SplittableRandom random) {
+        this.random = random;
+    }
+    
+    public TopologyCache getCache() {
+        return cache;
+    }
+    
+    public void setCache(TopologyCache cache) {
+        this.cache = cache;
+    }
+    
+    public boolean isRecurrent() {
+        return recurrent;
+    }
+    
+    /**
+     * Allow (or stop allowing) new connections that lead backwards through the network. A recurrent genome is run
+     * through a RecurrentNetwork that keeps its node values from one call of runNetwork to the next.
+     * @param recurrent whether the genome should be recurrent
+     */
+    public void setRecurrent(boolean recurrent) {
+        this.recurrent = recurrent;
+        memory = null;
+    }
+    
+    public boolean isFast() {
+        return fast;
+    }
+    
+    /**
+     * Compute activation functions approximately, through lookup tables (see Activation.approximate), or exactly
+     * from now on. The mode belongs to the genome, so genomes of different populations can use different modes.
+     * @param fast whether activations should be approximated
+     */
+    public void setFast(boolean fast) {
+        if (this.fast == fast) return;
+        this.fast = fast;
+        invalidate();
+    }
+    
+    public boolean isDense() {
+        return dense;
+    }
+    
+    /**
+     * Evaluate this genome's network level by level with dense matrices (see DenseNetwork) from now on, which is
+     * faster once a network has grown densely connected. Has no effect on recurrent genomes or genomes in single
+     * precision.
+     * @param dense whether the genome should be evaluated densely
+     */
+    public void setDense(boolean dense) {
+        this.dense = dense;
+        matrix = null;
+    }
+    
+    /**
+     * @return a new recurrent network for this genome, with its own state, for callers that want to step several
+     * independent sequences through the same genome
+     */
+    public RecurrentNetwork buildRecurrent() {
+        if (compiled == null) compileNetwork();
+        return new RecurrentNetwork(this);
+    }
+    
+    /**
+     * clear the state that this genome's recurrent network has carried over from previous calls of runNetwork
+     */
+    public void resetState() {
+        if (memory != null) memory.reset();
+    }
+    
+    /**
+     * @return this genome's nodes in network order, sorting any nodes added since it was last sorted into place
+     */
     public ArrayList<Node> getNetwork() {
+        orderNetwork();
+        if (network == null) {
+            ArrayList<Node> list = new ArrayList<>(ordered);
+            for (int k = 0; k < ordered; k++) {
+                list.add(nodes.get(order[k]));
+            }
+            network = list;
+        }
         return network;
     }
     
+    /**
+     * @param network a list of this genome's nodes, already in network order
+     */
     public void setNetwork(ArrayList<Node> network) {
-        this.network = network;
+        int[] positions = new int[network.size()];
+        boolean known = true;
+        for (int k = 0; k < positions.length; k++) {
+            positions[k] = nodeIndex(network.get(k).getID());
+            known &= positions[k] != -1;
+        }
+        order = known ? positions : null;
+        ordered = network.size();
+        sorted = ordered;
+        orderShared = false;
+        this.network = null;
+        invalidate();
     }
 }
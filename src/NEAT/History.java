@@ -18,53 +18,129 @@
  */
 
 /*
- * This class represents the population-level evolutionary history of the network. It really is just an arrayList of
- * genes, but it contains a variety of functions for detecting whether a new mutation already exists in the network.
- * Therefore, this class's list of genes contains EVERY gene ever created in the network as well as every Node (as
- * each gene contains a from- and to-Node.
+ * This class represents the population-level evolutionary history of the network. It records the innovations made
+ * in the population, so that the same mutation made by two genomes is given the same IDs: each connection (by the
+ * IDs of its from- and to-Node) is mapped to its geneID, and each gene that has been replaced by a node is mapped to
+ * that node's ID and the IDs of the genes into and out of it. Both are concurrent hash maps and new IDs come from
+ * atomic counters, so every lookup takes constant time and genomes may mutate in parallel. Every innovation
+ * remembers the last epoch (generation) it was used in, and compact drops the ones that no living genome carries and
+ * that haven't been used for a while, so the history stays the size of the living population rather than growing
+ * for the whole run. IDs are never reused: a dropped innovation made again is simply given new IDs.
  */
 
 package NEAT;
 
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class History {
-    private ArrayList<Gene> history;
+    /** the default number of epochs an innovation no living genome carries is kept for */
+    public static final int DEFAULT_WINDOW = 20;
     
+    private final ConcurrentHashMap<Long, GeneInnovation> genes;
+    private final ConcurrentHashMap<Integer, NodeInnovation> nodes;
+    private final AtomicInteger nextGeneID;
+    private final AtomicInteger nextNodeID;
+    private volatile int epoch;
+    private int window = DEFAULT_WINDOW;
     
     /**
      * Empty constructor, utilized during initial population creation
      */
     public History() {
-        history = new ArrayList<>();
+        genes = new ConcurrentHashMap<>();
+        nodes = new ConcurrentHashMap<>();
+        nextGeneID = new AtomicInteger();
+        nextNodeID = new AtomicInteger();
     }
     
     /**
-     * Constructor with provided history, used for cloning
+     * Constructor with the genes of an existing genome, typically one of the fully connected genomes a population
+     * starts with. Every gene is recorded as an innovation, as is every node that replaced a gene also in the list.
+     * @param h the genes to record
      */
-    public History(ArrayList<Gene> h) {
-        history = h;
+    public History(List<Gene> h) {
+        this();
+        ConcurrentHashMap<Integer, Gene> byID = new ConcurrentHashMap<>();
+        for (Gene g : h) {
+            addGeneInnovation(g);
+            byID.putIfAbsent(g.getGeneID(), g);
+            nextNodeID.accumulateAndGet(Math.max(g.getFromNode().getID(), g.getToNode().getID()) + 1, Math::max);
+        }
+        for (Gene g : h) {
+            Node n = g.getToNode();
+            Gene replaced = byID.get(n.getReplacedGeneID());
+            if (replaced == null || nodes.containsKey(n.getReplacedGeneID())) continue;
+            GeneInnovation in = genes.get(key(replaced.getFromNode().getID(), n.getID()));
+            GeneInnovation out = genes.get(key(n.getID(), replaced.getToNode().getID()));
+            if (in != null && out != null) {
+                nodes.put(n.getReplacedGeneID(), new NodeInnovation(n.getID(), in.getGeneID(), out.getGeneID()));
+            }
+        }
     }
     
     /**
      * Copy function, probably not needed
-     * @return a copy of this listing of genes
+     * @return an independent copy of this history
      */
     public History copy() {
-        return new History(history);
+        History h = new History();
+        genes.forEach((k, v) -> h.genes.put(k, new GeneInnovation(v.getGeneID(), v.getEpoch())));
+        nodes.forEach((k, v) -> h.nodes.put(k, new NodeInnovation(v.getNodeID(), v.getInID(), v.getOutID(),
+                v.getEpoch())));
+        h.nextGeneID.set(nextGeneID.get());
+        h.nextNodeID.set(nextNodeID.get());
+        h.epoch = epoch;
+        h.window = window;
+        return h;
+    }
+    
+    /**
+     * Get the geneID of a connection between two nodes, creating a new innovation if this is the first time any
+     * genome has made this connection. If several threads ask for the same new connection at once, they all get the
+     * same ID.
+     * @param a the fromNode for the gene
+     * @param b the toNode for the gene
+     * @return the geneID of the connection
+     */
+    public int geneInnovation(Node a, Node b) {
+        GeneInnovation g = genes.computeIfAbsent(key(a.getID(), b.getID()),
+                k -> new GeneInnovation(nextGeneID.getAndIncrement(), epoch));
+        g.touch(epoch);
+        return g.getGeneID();
+    }
+    
+    /**
+     * Get the node that replaces a gene, along with the IDs of the genes into and out of it, creating a new innovation
+     * if this is the first time any genome has replaced this gene. If several threads ask to replace the same gene at
+     * once, they all get the same node.
+     * @param g the gene to be replaced
+     * @return the node innovation
+     */
+    public NodeInnovation nodeInnovation(Gene g) {
+        NodeInnovation n = nodes.computeIfAbsent(g.getGeneID(), k -> new NodeInnovation(nextNodeID.getAndIncrement(),
+                nextGeneID.getAndIncrement(), nextGeneID.getAndIncrement(), epoch));
+        n.touch(epoch);
+        genes.putIfAbsent(key(g.getFromNode().getID(), n.getNodeID()), new GeneInnovation(n.getInID(), epoch));
+        genes.putIfAbsent(key(n.getNodeID(), g.getToNode().getID()), new GeneInnovation(n.getOutID(), epoch));
+        return n;
     }
     
     /**
-     * Add a new gene to the evolutionary history
-     * @param g the new gene to be added, typically a new connection between 2 existing nodes
+     * Record an existing gene as an innovation, if its connection hasn't been recorded already
+     * @param g the gene, typically a new connection between 2 existing nodes
      */
     public void addGeneInnovation(Gene g) {
-        history.add(g);
+        genes.putIfAbsent(key(g.getFromNode().getID(), g.getToNode().getID()), new GeneInnovation(g.getGeneID(), epoch));
+        nextGeneID.accumulateAndGet(g.getGeneID() + 1, Math::max);
     }
     
     /**
-     * Add two new genes to the evolutionary history, corresponding to the input and output genes of a new node
-     * @param n  the newly created node used to verify self-consistency
+     * Record an existing node, and the two genes into and out of it, as an innovation
+     * @param n  the node, whose replaced gene ID is set
      * @param g1 the gene leading into the new node
      * @param g2 the gene leading out of the new node
      */
@@ -76,21 +152,10 @@ public class History {
         if (g2.getFromNode().getID() != n.getID()) {
             System.out.println("The provided gene \"g2\" does not connect with the provided node n");
         }
-        disableLargestNode();
-        g1.setLargestNode(true);
-        history.add(g1);
-        history.add(g2);
-    }
-    
-    /**
-     * Go through the list of genes and make sure the largestNode flag is disabled for all genes. Used as a new
-     * node innovation has been created and want to set that newNode to have the largest nodeID. In the entire
-     * history array, there should only be a single gene that has the largestNode flag enabled
-     */
-    public void disableLargestNode() {
-        for (Gene g : history) {
-            g.setLargestNode(false);
-        }
+        addGeneInnovation(g1);
+        addGeneInnovation(g2);
+        nodes.putIfAbsent(n.getReplacedGeneID(), new NodeInnovation(n.getID(), g1.getGeneID(), g2.getGeneID(), epoch));
+        nextNodeID.accumulateAndGet(n.getID() + 1, Math::max);
     }
     
     /**
@@ -101,65 +166,78 @@ public class History {
      * @return -1 if unique, the geneID of the exiting innovation if not.
      */
     public int containsGeneInnovation(Node a, Node b) {
-        for (Gene g : history) {
-            if (g.getFromNode().getID() == a.getID() && g.getToNode().getID() == b.getID()) return g.getGeneID();
-        }
-        return -1;
+        GeneInnovation g = genes.get(key(a.getID(), b.getID()));
+        return g == null ? -1 : g.getGeneID();
     }
     
     /**
-     * Provided a randomly selected gene in an existing network, look through the nodes of each gene to see if any of
-     * those nodes replaced the selected gene. Note that we only need to look through toNodes, as the layer0 nodes
-     * don't have a replaced value (all -1). If there is a match, return that node's ID, otherwise if "will be" a new
-     * unique node innovation, return -1;
+     * Check whether any genome has already replaced the provided gene with a node
      * @param g the randomly selected gene to be replaced
      * @return the nodeID if this is not a unique new node, or -1 if it is unique
      */
     public int containsNodeInnovation(Gene g) {
-        Node temp;
-        for (Gene g1 : history) {
-            temp = g1.getToNode();
-            if (temp.getReplacedGeneID() == g.getGeneID()) {
-                return temp.getID();
-            }
-        }
-        return -1;
+        NodeInnovation n = nodes.get(g.getGeneID());
+        return n == null ? -1 : n.getNodeID();
     }
     
     /**
      * Used when a "new" Node is not unique to assign values to the gene feeding that "new" node
-     * @param n the "new" node
-     * @return the geneID feeding that node
+     * @param n the "new" node, whose replaced gene ID is set
+     * @return the geneID of the gene from the replaced gene's fromNode into that node, or -1 if it isn't recorded
      */
-    
-    //TODO need to rework this as many genes could be feeding into the same "new" node (just based on ID), but want to
-    // isolate specifically the gene that was replaced
     public int getIDBeforeNode(Node n) {
-        for (Gene g : history) {
-            if (g.getToNode().getID() == n.getID()) return g.getGeneID();
-        }
-        return -1;
+        NodeInnovation i = nodes.get(n.getReplacedGeneID());
+        return i == null || i.getNodeID() != n.getID() ? -1 : i.getInID();
     }
     
     /**
      * Used when a "new" Node is not unique to assign values to the gene leaving that "new" node
-     * @param n the "new" node
-     * @return the geneID leaving that node
+     * @param n the "new" node, whose replaced gene ID is set
+     * @return the geneID of the gene from that node to the replaced gene's toNode, or -1 if it isn't recorded
      */
-    
-    //TODO need to rework this, as many genes could be leaving the same "new" node (just based on ID), but want to
-    // isolate specifically the gene that connects to the previous to-Node
     public int getIDAfterNode(Node n) {
-        for (Gene g : history) {
-            if (g.getFromNode().getID() == n.getID()) return g.getGeneID();
+        NodeInnovation i = nodes.get(n.getReplacedGeneID());
+        return i == null || i.getNodeID() != n.getID() ? -1 : i.getOutID();
+    }
+    
+    /**
+     * Drop every innovation that none of the provided genomes carries and that hasn't been used in the last window
+     * epochs, then start a new epoch. A node innovation is kept while any genome carries the node or the gene it
+     * replaced (as that gene may be re-enabled and replaced again).
+     * @param living every genome still in the population
+     */
+    public void compact(Collection<Genome> living) {
+        BitSet liveGenes = new BitSet();
+        BitSet liveNodes = new BitSet();
+        for (Genome g : living) {
+            for (Gene gene : g.getGenes()) {
+                if (gene.getGeneID() >= 0) liveGenes.set(gene.getGeneID());
+            }
+            for (Node n : g.getNodes()) {
+                if (n.getID() >= 0) liveNodes.set(n.getID());
+            }
         }
-        return -1;
+        int oldest = epoch - window;
+        genes.values().removeIf(g -> g.getEpoch() < oldest && !liveGenes.get(g.getGeneID()));
+        nodes.entrySet().removeIf(e -> e.getValue().getEpoch() < oldest && !liveNodes.get(e.getValue().getNodeID())
+                && (e.getKey() < 0 || !liveGenes.get(e.getKey())));
+        epoch++;
     }
     
-    @Override
+    /**
+     * @return the key of a connection in the gene map
+     */
+    private static long key(int from, int to) {
+        return (long) from << 32 | (to & 0xFFFFFFFFL);
+    }
     
+    @Override
     public int hashCode() {
-        return getHistory().hashCode();
+        int result = genes.hashCode();
+        result = 31 * result + nodes.hashCode();
+        result = 31 * result + nextGeneID.get();
+        result = 31 * result + nextNodeID.get();
+        return result;
     }
     
     @Override
@@ -169,25 +247,152 @@ public class History {
         
         History history1 = (History) o;
         
-        return getHistory().equals(history1.getHistory());
+        if (nextGeneID.get() != history1.nextGeneID.get()) return false;
+        if (nextNodeID.get() != history1.nextNodeID.get()) return false;
+        if (!genes.equals(history1.genes)) return false;
+        return nodes.equals(history1.nodes);
+    }
+    
+    /**
+     * @return the number of distinct connections recorded
+     */
+    public int getGeneInnovationCount() {
+        return genes.size();
+    }
+    
+    /**
+     * @return the number of replaced genes recorded
+     */
+    public int getNodeInnovationCount() {
+        return nodes.size();
+    }
+    
+    public int getEpoch() {
+        return epoch;
     }
     
-    public ArrayList<Gene> getHistory() {
-        return history;
+    public int getWindow() {
+        return window;
     }
     
-    public void setHistory(ArrayList<Gene> history) {
-        this.history = history;
+    /**
+     * @param window the number of epochs an innovation that no living genome carries is kept for after it was last
+     *               used
+     */
+    public void setWindow(int window) {
+        this.window = window;
     }
     
+    /**
+     * @return the geneID the next new gene innovation will be given
+     */
     public int getNextGeneID() {
-        return history.size();
+        return nextGeneID.get();
     }
     
+    /**
+     * @return the nodeID the next new node innovation will be given
+     */
     public int getNextNodeID() {
-        for (Gene g : history) {
-            if (g.isLargestNode()) return g.getToNode().getID() + 1;
+        return nextNodeID.get();
+    }
+    
+    /*
+     * A connection's geneID, and the last epoch it was used in
+     */
+    private static final class GeneInnovation {
+        private final int geneID;
+        private volatile int epoch;
+        
+        GeneInnovation(int geneID, int epoch) {
+            this.geneID = geneID;
+            this.epoch = epoch;
+        }
+        
+        int getGeneID() {
+            return geneID;
+        }
+        
+        int getEpoch() {
+            return epoch;
+        }
+        
+        void touch(int e) {
+            if (epoch < e) epoch = e;
+        }
+        
+        @Override
+        public int hashCode() {
+            return geneID;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return geneID == ((GeneInnovation) o).geneID;
+        }
+    }
+    
+    /*
+     * A node that has replaced a gene, along with the IDs of the genes into and out of it, and the last epoch it was
+     * used in (which is not part of its identity)
+     */
+    public static final class NodeInnovation {
+        private final int nodeID;
+        private final int inID;
+        private final int outID;
+        private volatile int epoch;
+        
+        public NodeInnovation(int nodeID, int inID, int outID) {
+            this(nodeID, inID, outID, 0);
+        }
+        
+        NodeInnovation(int nodeID, int inID, int outID, int epoch) {
+            this.nodeID = nodeID;
+            this.inID = inID;
+            this.outID = outID;
+            this.epoch = epoch;
+        }
+        
+        int getEpoch() {
+            return epoch;
+        }
+        
+        void touch(int e) {
+            if (epoch < e) epoch = e;
+        }
+        
+        public int getNodeID() {
+            return nodeID;
+        }
+        
+        public int getInID() {
+            return inID;
+        }
+        
+        public int getOutID() {
+            return outID;
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = nodeID;
+            result = 31 * result + inID;
+            result = 31 * result + outID;
+            return result;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            
+            NodeInnovation that = (NodeInnovation) o;
+            
+            if (nodeID != that.nodeID) return false;
+            if (inID != that.inID) return false;
+            return outID == that.outID;
         }
-        return -1;
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class is a structural change a genome has decided to make to itself, before the population history has given
+ * it any IDs: either a new node replacing one of its genes, or a new connection between two of its nodes. Deciding
+ * needs only the genome and its own random stream, so every genome of a population can decide at once; assigning the
+ * IDs then happens one genome at a time in a fixed order, so the IDs are the same however the deciding was spread
+ * over threads, and two genomes making the same change still get the same IDs.
+ */
+
+package NEAT;
+
+public class Mutation {
+    private final Gene gene;
+    private final int geneIndex;
+    private final Node from;
+    private final Node to;
+    private final int fromIndex;
+    private final int toIndex;
+    private History.NodeInnovation innovation;
+    private int geneID = -1;
+    
+    /**
+     * A new node replacing a gene
+     * @param gene      the gene to replace
+     * @param geneIndex the position of the gene in the genome's genes
+     */
+    Mutation(Gene gene, int geneIndex) {
+        this.gene = gene;
+        this.geneIndex = geneIndex;
+        this.from = null;
+        this.to = null;
+        this.fromIndex = -1;
+        this.toIndex = -1;
+    }
+    
+    /**
+     * A new connection between two nodes
+     * @param from      the node the connection leads from
+     * @param to        the node the connection leads to
+     * @param fromIndex the position of from in the genome's nodes
+     * @param toIndex   the position of to in the genome's nodes
+     */
+    Mutation(Node from, Node to, int fromIndex, int toIndex) {
+        this.gene = null;
+        this.geneIndex = -1;
+        this.from = from;
+        this.to = to;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+    }
+    
+    /**
+     * Look up the IDs of this change in the history, creating new ones if no genome has made it before
+     * @param h the population evolution history
+     */
+    public void assign(History h) {
+        if (isNode()) {
+            innovation = h.nodeInnovation(gene);
+        } else {
+            geneID = h.geneInnovation(from, to);
+        }
+    }
+    
+    /**
+     * @return whether the IDs of this change have been assigned
+     */
+    public boolean isAssigned() {
+        return innovation != null || geneID != -1;
+    }
+    
+    /**
+     * @return whether this change adds a node (rather than a connection)
+     */
+    public boolean isNode() {
+        return gene != null;
+    }
+    
+    /**
+     * @return the gene a new node replaces, null for a new connection
+     */
+    public Gene getGene() {
+        return gene;
+    }
+    
+    /**
+     * @return the node a new connection leads from, null for a new node
+     */
+    public Node getFrom() {
+        return from;
+    }
+    
+    /**
+     * @return the node a new connection leads to, null for a new node
+     */
+    public Node getTo() {
+        return to;
+    }
+    
+    int getGeneIndex() {
+        return geneIndex;
+    }
+    
+    int getFromIndex() {
+        return fromIndex;
+    }
+    
+    int getToIndex() {
+        return toIndex;
+    }
+    
+    /**
+     * @return the IDs of a new node and its genes, null until assigned or for a new connection
+     */
+    public History.NodeInnovation getInnovation() {
+        return innovation;
+    }
+    
+    /**
+     * @return the geneID of a new connection, -1 until assigned or for a new node
+     */
+    public int getGeneID() {
+        return geneID;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class is an optional backend that turns a compiled network into a generated class whose evaluate method is
+ * straight-line arithmetic, with every weight written into the code as a constant. The JIT can then inline and
+ * register-allocate the whole network. Generating a class costs far more than running a network, so it is only
+ * worth doing for genomes that are evaluated many times: Genome.runNetwork only asks for one once a genome has been
+ * run HOT_CALLS times, and small networks (or networks too large for the JIT to compile a single method) are left to
+ * the compiled network. Genomes ask through generateLater, which compiles on a single background thread, so a hot
+ * genome keeps running its compiled network until the generated one is ready instead of pausing for the compiler.
+ * Generated classes are cached by their source, so the same network is never generated twice.
+ */
+
+package NEAT;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class NetworkGenerator {
+    public static final int HOT_CALLS = 10000;
+    public static final int MIN_GENES = 16;
+    public static final int MAX_GENES = 600;
+    private static final int CACHE_SIZE = 256;
+    private static final String CLASS_NAME = "GeneratedNetwork";
+    
+    private static volatile boolean enabled = false;
+    private static final Map<String, NetworkEvaluator> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NetworkEvaluator> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    
+    private static final ExecutorService compiler = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "NetworkGenerator");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    private NetworkGenerator() {
+    }
+    
+    /**
+     * Generate (or find in the cache) a straight-line evaluator on the background thread. The compiled network must
+     * not change meanwhile; compiled networks are never changed once built, only replaced.
+     * @param c the compiled network to generate code for
+     * @return the evaluator once generated, completing with null where generate would return null, or exceptionally
+     * where generate would throw (in which case the exception is also left to the background thread, to be reported)
+     */
+    public static CompletableFuture<NetworkEvaluator> generateLater(CompiledNetwork c) {
+        if (c.getGeneCount() < MIN_GENES || c.getGeneCount() > MAX_GENES) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<NetworkEvaluator> future = new CompletableFuture<>();
+        compiler.execute(() -> {
+            try {
+                future.complete(generate(c));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+                throw t;
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * Generate (or find in the cache) a straight-line evaluator for the provided network.
+     * @param c the compiled network to generate code for
+     * @return the generated evaluator, or null if the network is outside the size limits or no compiler is available
+     */
+    public static NetworkEvaluator generate(CompiledNetwork c) {
+        if (c.getGeneCount() < MIN_GENES || c.getGeneCount() > MAX_GENES) return null;
+        String body = writeBody(c);
+        synchronized (cache) {
+            if (cache.containsKey(body)) return cache.get(body);
+        }
+        NetworkEvaluator e = define(body);
+        if (e != null) {
+            synchronized (cache) {
+                cache.put(body, e);
+            }
+        }
+        return e;
+    }
+    
+    /**
+     * Write the evaluate method for a network. Every node becomes a local variable that is assigned once, in network
+     * order, from the sum of its incoming genes.
+     * @param c the compiled network
+     * @return the source of the evaluate method
+     */
+    private static String writeBody(CompiledNetwork c) {
+        int count = c.getNodeCount();
+        int[] from = c.getFrom();
+        int[] to = c.getTo();
+        double[] weight = c.getWeight();
+        
+        StringBuilder[] sums = new StringBuilder[count];
+        for (int n = 0; n < count; n++) {
+            for (int e = from[n]; e < from[n + 1]; e++) {
+                if (sums[to[e]] == null) {
+                    sums[to[e]] = new StringBuilder();
+                } else {
+                    sums[to[e]].append(" + ");
+                }
+                sums[to[e]].append('v').append(n).append(" * ").append(Double.toHexString(weight[e]));
+            }
+        }
+        
+        String[] inputs = new String[count];
+        int[] inputIndex = c.getInputIndex();
+        for (int i = 0; i < inputIndex.length; i++) {
+            if (inputIndex[i] != -1) inputs[inputIndex[i]] = "ins[" + i + "]";
+        }
+        if (c.getBiasIndex() != -1) inputs[c.getBiasIndex()] = "1d";
+        
+        StringBuilder b = new StringBuilder();
+        b.append("    public void evaluate(double[] ins, double[] outs) {\n");
+        for (int n = 0; n < count; n++) {
+            b.append("        double v").append(n).append(" = ");
+            if (n < c.getInputCount()) {
+                b.append(inputs[n] != null ? inputs[n] : "0d");
+            } else {
+                b.append("Activation.").append(Activation.fromID(c.getActivation()[n]).name());
+                b.append(c.isFast() ? ".approximate(" : ".apply(");
+                b.append(sums[n] != null ? sums[n] : "0d").append(')');
+            }
+            b.append(";\n");
+        }
+        int[] outputIndex = c.getOutputIndex();
+        for (int i = 0; i < outputIndex.length; i++) {
+            b.append("        outs[").append(i).append("] = ");
+            b.append(outputIndex[i] != -1 ? "v" + outputIndex[i] : "0d").append(";\n");
+        }
+        b.append("    }\n");
+        return b.toString();
+    }
+    
+    /**
+     * Compile the generated class in memory and define it as a hidden class in this package.
+     * @param body the source of the evaluate method
+     * @return a new instance of the generated class, or null if it could not be compiled, defined or instantiated
+     */
+    private static NetworkEvaluator define(String body) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) return null;
+        String source = "package NEAT;\n\nfinal class " + CLASS_NAME + " implements NetworkEvaluator {\n" + body + "}\n";
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///NEAT/" + CLASS_NAME + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JavaFileManager manager = new ForwardingJavaFileManager<>(compiler.getStandardFileManager(null, null, null)) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + className + ".class"), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return bytes;
+                    }
+                };
+            }
+        };
+        List<String> options = List.of("-classpath", System.getProperty("java.class.path"), "-g:none");
+        try {
+            if (!compiler.getTask(null, manager, null, options, null, List.of(file)).call()) return null;
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes.toByteArray(), true);
+            return (NetworkEvaluator) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    public static void setEnabled(boolean e) {
+        enabled = e;
+    }
+    
+    public static int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class is the structure of a compiled network, without its weights: the order the nodes operate in, which
+ * genes connect them (in CSR layout, pruned of dead nodes and disabled genes) and each node's activation function.
+ * Genomes whose networks share a structure, which is common after crossover and for elites, can share a single
+ * topology and only supply their own weights. A topology is identified by the fingerprint of the genome it was built
+ * from, and knows where each of that genome's enabled genes ends up so it can lay out any matching genome's weights.
+ */
+
+package NEAT;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class NetworkTopology {
+    private final int inputSize;
+    private final int outputSize;
+    private final int inputCount;
+    private final int nodeCount;
+    private final int[] inputIndex;
+    private final int biasIndex;
+    private final int[] outputIndex;
+    private final int[] from;
+    private final int[] to;
+    private final byte[] activation;
+    private final boolean fast;
+    private final int[] slot;
+    
+    /**
+     * Build the topology of a genome's network. Genes that are disabled, or that do not lead forward through the
+     * network order, are left out as they can never contribute to the outputs. So are hidden nodes with no path to
+     * an output. Hidden nodes with no path from the inputs are kept, as they still feed their activation of 0 on.
+     * @param g the genome, whose network list has already been built
+     */
+    public NetworkTopology(Genome g) {
+        inputSize = g.getInputSize();
+        outputSize = g.getOutputSize();
+        
+        HashMap<Integer, Integer> index = new HashMap<>();
+        byte[] nodeActivation = new byte[g.getNetwork().size()];
+        fast = g.isFast();
+        int count = 0;
+        int inputs = 0;
+        for (Node n : g.getNetwork()) {
+            nodeActivation[count] = n.getActivation().getID();
+            index.put(n.getID(), count++);
+            if (n.getLayer() == 0) inputs++;
+        }
+        inputCount = inputs;
+        
+        int enabled = 0;
+        for (Gene gene : g.getGenes()) {
+            if (gene.isEnabled()) enabled++;
+        }
+        slot = new int[enabled];
+        int[] edgeFrom = new int[enabled];
+        int[] edgeTo = new int[enabled];
+        int[] edgeGene = new int[enabled];
+        int edges = 0;
+        int k = 0;
+        for (Gene gene : g.getGenes()) {
+            if (!gene.isEnabled()) continue;
+            slot[k] = -1;
+            Integer a = index.get(gene.getFromNode().getID());
+            Integer b = index.get(gene.getToNode().getID());
+            if (a != null && b != null && a < b) {
+                edgeFrom[edges] = a;
+                edgeTo[edges] = b;
+                edgeGene[edges] = k;
+                edges++;
+            }
+            k++;
+        }
+        
+        boolean[] live = new boolean[count];
+        Arrays.fill(live, 0, inputCount, true);
+        for (int i = 0; i < outputSize; i++) {
+            Integer o = index.get(inputSize + 1 + i);
+            if (o != null) live[o] = true;
+        }
+        int[] allFrom = csr(edgeFrom, edges, count);
+        int[] allTo = new int[edges];
+        int[] next = Arrays.copyOf(allFrom, count);
+        for (int e = 0; e < edges; e++) {
+            allTo[next[edgeFrom[e]]++] = edgeTo[e];
+        }
+        for (int n = count - 1; n >= inputCount; n--) {
+            for (int e = allFrom[n]; e < allFrom[n + 1] && !live[n]; e++) {
+                if (live[allTo[e]]) live[n] = true;
+            }
+        }
+        
+        int[] remap = new int[count];
+        int kept = 0;
+        for (int n = 0; n < count; n++) {
+            remap[n] = live[n] ? kept++ : -1;
+        }
+        nodeCount = kept;
+        activation = new byte[kept];
+        for (int n = 0; n < count; n++) {
+            if (live[n]) activation[remap[n]] = nodeActivation[n];
+        }
+        
+        int liveEdges = 0;
+        for (int e = 0; e < edges; e++) {
+            if (live[edgeFrom[e]] && live[edgeTo[e]]) {
+                edgeFrom[liveEdges] = remap[edgeFrom[e]];
+                edgeTo[liveEdges] = remap[edgeTo[e]];
+                edgeGene[liveEdges] = edgeGene[e];
+                liveEdges++;
+            }
+        }
+        from = csr(edgeFrom, liveEdges, kept);
+        to = new int[liveEdges];
+        next = Arrays.copyOf(from, kept);
+        for (int e = 0; e < liveEdges; e++) {
+            int s = next[edgeFrom[e]]++;
+            to[s] = edgeTo[e];
+            slot[edgeGene[e]] = s;
+        }
+        
+        inputIndex = new int[inputSize];
+        for (int i = 0; i < inputSize; i++) {
+            inputIndex[i] = remap(index, remap, i);
+        }
+        biasIndex = remap(index, remap, g.getBiasNodeID());
+        outputIndex = new int[outputSize];
+        for (int i = 0; i < outputSize; i++) {
+            outputIndex[i] = remap(index, remap, inputSize + 1 + i);
+        }
+    }
+    
+    /**
+     * Lay out the weights of a genome with this topology in CSR order
+     * @param g a genome with the same fingerprint as the one this topology was built from
+     * @return the weight of every gene in the topology
+     */
+    public double[] weights(Genome g) {
+        double[] weight = new double[to.length];
+        int k = 0;
+        for (Gene gene : g.getGenes()) {
+            if (!gene.isEnabled()) continue;
+            if (slot[k] != -1) weight[slot[k]] = gene.getWeight();
+            k++;
+        }
+        return weight;
+    }
+    
+    /**
+     * Describe everything about a genome's network that its topology depends on, which is every node in network
+     * order (its ID, whether it is an input and its activation function), the two ends of every enabled gene and
+     * whether activations are approximated. Genomes with equal fingerprints have equal topologies.
+     * @param g the genome, whose network list has already been built
+     * @return the fingerprint
+     */
+    public static int[] fingerprint(Genome g) {
+        int enabled = 0;
+        for (Gene gene : g.getGenes()) {
+            if (gene.isEnabled()) enabled++;
+        }
+        int[] f = new int[5 + g.getNetwork().size() * 3 + enabled * 2];
+        int i = 0;
+        f[i++] = g.getInputSize();
+        f[i++] = g.getOutputSize();
+        f[i++] = g.getBiasNodeID();
+        f[i++] = g.isFast() ? 1 : 0;
+        f[i++] = g.getNetwork().size();
+        for (Node n : g.getNetwork()) {
+            f[i++] = n.getID();
+            f[i++] = n.getLayer() == 0 ? 0 : 1;
+            f[i++] = n.getActivation().getID();
+        }
+        for (Gene gene : g.getGenes()) {
+            if (!gene.isEnabled()) continue;
+            f[i++] = gene.getFromNode().getID();
+            f[i++] = gene.getToNode().getID();
+        }
+        return f;
+    }
+    
+    /**
+     * Count the genes leaving each node and turn the counts into CSR offsets
+     * @param edgeFrom the node each gene leaves from
+     * @param edges    the number of genes
+     * @param count    the number of nodes
+     * @return the offsets, where the genes leaving node n are at [offsets[n], offsets[n + 1])
+     */
+    private static int[] csr(int[] edgeFrom, int edges, int count) {
+        int[] offsets = new int[count + 1];
+        for (int e = 0; e < edges; e++) {
+            offsets[edgeFrom[e] + 1]++;
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        return offsets;
+    }
+    
+    /**
+     * @return the compiled index of the node with the provided ID, or -1 if it isn't in the compiled network
+     */
+    private static int remap(HashMap<Integer, Integer> index, int[] remap, int ID) {
+        Integer i = index.get(ID);
+        return i == null ? -1 : remap[i];
+    }
+    
+    public int getInputSize() {
+        return inputSize;
+    }
+    
+    public int getOutputSize() {
+        return outputSize;
+    }
+    
+    public int getInputCount() {
+        return inputCount;
+    }
+    
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
+    public int getGeneCount() {
+        return to.length;
+    }
+    
+    int[] getInputIndex() {
+        return inputIndex;
+    }
+    
+    int getBiasIndex() {
+        return biasIndex;
+    }
+    
+    int[] getOutputIndex() {
+        return outputIndex;
+    }
+    
+    int[] getFrom() {
+        return from;
+    }
+    
+    int[] getTo() {
+        return to;
+    }
+    
+    byte[] getActivation() {
+        return activation;
+    }
+    
+    boolean isFast() {
+        return fast;
+    }
+}
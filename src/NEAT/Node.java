@@ -20,10 +20,11 @@
 
 /*
  * This class represents the nodes of a neural network. They store values for the inputs and outputs. Outputs are
- * calculated as a sigmoid of the inputs so as to provide a value between 0 and 1. This is not true for input nodes
- * to the network, which take their raw values. Each node is given a unique ID (no two nodes in the
- * network should have the same geneID), they are given a layer to describe where they lie within the network, and
- * they are given a list of genes to which they should provide an output.
+ * calculated from the inputs by the node's activation function (a sigmoid by default, so as to provide a value
+ * between 0 and 1). This is not true for input nodes to the network, which take their raw values. Each node is given
+ * a unique ID (no two nodes in the network should have the same geneID), they are given a layer to describe where
+ * they lie within the network, and they are given a list of genes to which they should provide an output (filled in
+ * on request by Genome.connectNodes, as genomes share their nodes with their copies).
  */
 
 package NEAT;
@@ -35,21 +36,26 @@ public class Node {
     private double inputs;
     private double outputs;
     private int layer;
+    private double depth;
     private ArrayList<Gene> outputGenes;
     private int replacedGeneID;
+    private Activation activation;
     
     /**
-     * Constructor function for a new node
+     * Constructor function for a new node. Its depth starts out equal to its layer, which is right for inputs (0)
+     * and outputs (1); hidden nodes are given their depth by the genome.
      * @param l is the layer of the node
      * @param n is the unique nodeID
      */
     public Node(int l, int n) {
         nodeID = n;
         layer = l;
+        depth = l;
         outputGenes = new ArrayList<>();
         inputs = 0D;
         outputs = 0D;
         replacedGeneID = -1;
+        activation = Activation.SIGMOID;
     }
     
     /**
@@ -61,20 +67,22 @@ public class Node {
     public Node(int l, int n, int replaced) {
         nodeID = n;
         layer = l;
+        depth = l;
         replacedGeneID = replaced;
         outputGenes = new ArrayList<>();
         inputs = 0d;
         outputs = 0d;
+        activation = Activation.SIGMOID;
     }
     
     /**
-     * compute the sigmoid of the outputs and feed it forward through the network if each gene is activated
+     * compute the activation of the outputs and feed it forward through the network if each gene is activated
      */
     public void computeOut() {
         if (layer == 0) {
             outputs = inputs;
         } else {
-            outputs = sigmoid(inputs);
+            outputs = activation.apply(inputs);
         }
         for (Gene g : outputGenes) {
             if (g.isEnabled()) {
@@ -83,15 +91,6 @@ public class Node {
         }
     }
     
-    /**
-     * compute a sigmoid function. Has its own method so that it can easily be changed
-     * @param ins the inputs
-     * @return the sigmoid-ed value
-     */
-    private double sigmoid(double ins) {
-        return 1.0d / (1.0d + Math.exp(-5 * ins));
-    }
-    
     /**
      * Add a provided value to the input total
      * @param i input that comes from a gene
@@ -120,7 +119,9 @@ public class Node {
      */
     public Node copy() {
         Node n = new Node(layer, nodeID, replacedGeneID);
-        n.setOutputGenes(outputGenes);
+        n.setDepth(depth);
+        n.setActivation(activation);
+        n.setOutputGenes(new ArrayList<>(outputGenes));
         n.clearValues();
         return n;
     }
@@ -134,12 +135,12 @@ public class Node {
     }
     
     /**
-     * Determine whether this node is connected to or in the same layer as a provided node
+     * Determine whether this node is connected to or at the same depth as a provided node
      * @param n the provided node to check against
      * @return a boolean value
      */
     public boolean isConnected(Node n) {
-        if (n.getLayer() == layer) {
+        if (n.getDepth() == depth) {
             return true;
         }
         for (Gene g : n.getOutputGenes()) {
@@ -151,6 +152,22 @@ public class Node {
         return false;
     }
     
+    /**
+     * Determine whether this node has an output gene leading to a provided node
+     * @param n the provided node to check against
+     * @return a boolean value
+     */
+    public boolean connectsTo(Node n) {
+        for (Gene g : outputGenes) {
+            if (g.getToNode().getID() == n.getID()) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * @return the layer of this node: 0 for inputs and the bias, and otherwise higher than the layer of every node
+     * with a gene into this one from a shallower depth, which the genome keeps true as it adds nodes and connections
+     */
     public int getLayer() {
         return layer;
     }
@@ -159,6 +176,18 @@ public class Node {
         layer = l;
     }
     
+    /**
+     * @return the position of this node in the network order: inputs are at 0, outputs at 1, and every gene (of a
+     * network without recurrent connections) leads from a lower depth to a higher one
+     */
+    public double getDepth() {
+        return depth;
+    }
+    
+    public void setDepth(double d) {
+        depth = d;
+    }
+    
     public ArrayList<Gene> getOutputGenes() {
         return outputGenes;
     }
@@ -181,8 +210,11 @@ public class Node {
         temp = Double.doubleToLongBits(getOutputs());
         result = 31 * result + (int) (temp ^ (temp >>> 32));
         result = 31 * result + getLayer();
+        temp = Double.doubleToLongBits(getDepth());
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
         result = 31 * result + (getOutputGenes() != null ? getOutputGenes().hashCode() : 0);
         result = 31 * result + getReplacedGeneID();
+        result = 31 * result + getActivation().hashCode();
         return result;
     }
     
@@ -197,7 +229,9 @@ public class Node {
         if (Double.compare(node.getInputs(), getInputs()) != 0) return false;
         if (Double.compare(node.getOutputs(), getOutputs()) != 0) return false;
         if (getLayer() != node.getLayer()) return false;
+        if (Double.compare(node.getDepth(), getDepth()) != 0) return false;
         if (getReplacedGeneID() != node.getReplacedGeneID()) return false;
+        if (getActivation() != node.getActivation()) return false;
         return getOutputGenes() != null ? getOutputGenes().equals(node.getOutputGenes()) : node.getOutputGenes() == null;
     }
     
@@ -218,4 +252,12 @@ public class Node {
     }
     
     public void setNodeID(int i) { nodeID = i;}
+    
+    public Activation getActivation() {
+        return activation;
+    }
+    
+    public void setActivation(Activation activation) {
+        this.activation = activation;
+    }
 }
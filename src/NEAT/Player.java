@@ -20,6 +20,7 @@
 package NEAT;
 
 import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public class Player{
 	
@@ -37,11 +38,22 @@ public class Player{
 	 * @param outSize # of possible outputs expected
 	 */
 	public Player(int inSize, int outSize){
+		this(inSize, outSize, new SplittableRandom());
+	}
+	
+	/**
+	 * Constructor whose genome draws from a provided random stream
+	 *
+	 * @param inSize  # of inputs provided
+	 * @param outSize # of possible outputs expected
+	 * @param random  the stream, typically split from the population's
+	 */
+	public Player(int inSize, int outSize, SplittableRandom random){
 		inputs = new double[inSize];
 		outputs = new double[outSize];
 		living = true;
 		fitness = 0d;
-		brain = new Genome(inSize, outSize);
+		brain = new Genome(inSize, outSize, random);
 	}
 	
 	/**
@@ -65,7 +77,7 @@ public class Player{
 	 * Propagate the inputs through the network and collect the outputs
 	 */
 	public void Think(){
-		outputs = brain.runNetwork(inputs);
+		brain.evaluate(inputs, outputs);
 	}
 	
 	public void Move(){
@@ -87,8 +99,7 @@ public class Player{
 	}
 	
 	public Player copy(){
-		Player p = new Player(inputs.length, outputs.length);
-		p.setBrain(brain.copy());
+		Player p = new Player(brain.copy());
 		p.setFitness(fitness);
 		p.setLiving(living);
 		return p;
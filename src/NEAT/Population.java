@@ -20,6 +20,9 @@
 package NEAT;
 
 import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 public class Population{
 	
@@ -29,15 +32,29 @@ public class Population{
 	private History history;
 	private int generationNum;
 	private ArrayList<Player> players;
+	private TopologyCache topologies;
+	private Precision precision = Precision.DOUBLE;
+	private final long seed;
+	private final SplittableRandom random;
+	private boolean parallel = true;
+	private CompatibilityDistance compatibility = new CompatibilityDistance();
+	private int nextSpeciesID;
+	private int indexThreshold = SpeciesIndex.DEFAULT_MIN_SPECIES;
+	private boolean exactSpeciation = true;
+	private ThresholdController controller;
 	
 	public Population(){
 		players = new ArrayList<>();
 		species = new ArrayList<>();
 		history = new History();
+		topologies = new TopologyCache();
+		seed = ThreadLocalRandom.current().nextLong();
+		random = new SplittableRandom(seed);
 		inputs = 4; // needs to change based on implementation
 		outputs = 4; //change based on implementation
 		for(int i = 0; i < 100; i++) {
-			players.add(new Player(inputs, outputs));
+			players.add(new Player(inputs, outputs, random.split()));
+			players.get(i).getBrain().setCache(topologies);
 			players.get(i).getBrain().buildNetwork();
 		}
 		generationNum = 0;
@@ -45,36 +62,81 @@ public class Population{
 		speciate();
 	}
 	
+	/**
+	 * Sort every player into the first species whose reference player it is compatible with, starting a new species
+	 * (with the player as its reference) if there is none, and drop the species left without players. Players are
+	 * checked against the existing species in parallel, if the population is parallel; the results are then
+	 * committed one player at a time in order, with the players that fit no existing species checked against the
+	 * species started so far this round. New species are therefore created in the same order, with the same IDs,
+	 * however many threads did the checking. Once there are enough species, each player is only checked against the
+	 * few whose references look similar (see SpeciesIndex), and against the rest only if none of those fits and the
+	 * search is exact. If the population has a threshold controller, the compatibility threshold is then adjusted
+	 * toward the target number of species for the next call.
+	 */
 	public void speciate(){
-		if(species.size() == 0) {
-			Species s = new Species(0, players.get(0));
-			species.add(s);
+		ArrayList<Species> existing = new ArrayList<>(species);
+		for(Species s : existing) {
+			s.setCompatibility(compatibility);
+			s.getSpeciesPlayer().clear();
+			s.getReference().getBrain().geneKeys(); // index the references before the threads share them
 		}
+		SpeciesIndex index = new SpeciesIndex(existing, exactSpeciation, indexThreshold);
+		int[] assigned = new int[players.size()];
+		IntStream range = IntStream.range(0, players.size());
+		if(parallel) range = range.parallel();
+		range.forEach(i -> assigned[i] = index.find(players.get(i)));
 		
-		boolean flag = false;
-		for(Player p : players) {
-			for(Species s : species) {
-				if(s.memberOfSpecies(p)) {
-					s.getSpeciesPlayer().add(p);
-					flag = true;
-					break;
-				}
+		ArrayList<Species> started = new ArrayList<>();
+		SpeciesIndex startedIndex = new SpeciesIndex(started, exactSpeciation, indexThreshold);
+		for(int i = 0; i < assigned.length; i++) {
+			Player p = players.get(i);
+			if(assigned[i] != -1) {
+				existing.get(assigned[i]).getSpeciesPlayer().add(p);
+				continue;
 			}
-			if(!flag) {
-				Species s1 = new Species(species.size(), p);
-				species.add(s1);
+			int found = startedIndex.find(p);
+			if(found != -1) {
+				started.get(found).getSpeciesPlayer().add(p);
+			} else {
+				Species s = new Species(nextSpeciesID++, p, random.split());
+				s.setCompatibility(compatibility);
+				startedIndex.add(s);
 			}
 		}
+		species.addAll(started);
+		species.removeIf(s -> s.getSpeciesPlayer().isEmpty());
+		if(controller != null) {
+			compatibility.setThreshold(controller.adjust(compatibility.getThreshold(), species.size()));
+		}
 	}
 	
 	public Population(int ins, int outs, int size){
+		this(ins, outs, size, ThreadLocalRandom.current().nextLong());
+	}
+	
+	/**
+	 * Create a population whose every random choice is drawn from streams split, in a fixed order, from a single
+	 * seed: each player's genome and each species has its own stream, and copies and children are given streams
+	 * split from their parent's. Two populations created with the same seed and run through the same steps evolve
+	 * identically.
+	 *
+	 * @param ins  # of inputs of each player
+	 * @param outs # of outputs of each player
+	 * @param size # of players
+	 * @param seed the seed
+	 */
+	public Population(int ins, int outs, int size, long seed){
 		players = new ArrayList<>();
 		species = new ArrayList<>();
 		history = new History();
+		topologies = new TopologyCache();
+		this.seed = seed;
+		random = new SplittableRandom(seed);
 		inputs = ins;
 		outputs = outs;
 		for(int i = 0; i < size; i++) {
-			players.add(new Player(ins, outs));
+			players.add(new Player(ins, outs, random.split()));
+			players.get(i).getBrain().setCache(topologies);
 			players.get(i).getBrain().buildNetwork();
 		}
 		generationNum = 0;
@@ -158,10 +220,35 @@ public class Population{
 		}
 	}
 	
+	/**
+	 * Mutate every player, then end the generation: innovations that no player carries any more (and that haven't
+	 * been made again recently) are dropped from the history. In parallel, the genomes first choose their mutations
+	 * at the same time (each from its own random stream, making weight changes straight away), then the history gives
+	 * the new nodes and connections their IDs one player at a time in order, and then the genomes make those changes
+	 * at the same time. IDs are handed out in the same order either way, so a parallel run is identical to a serial
+	 * one with the same seed.
+	 */
 	public void mutate(){
+		if(parallel) {
+			Mutation[] proposals = new Mutation[players.size()];
+			IntStream.range(0, players.size()).parallel()
+					.forEach(i -> proposals[i] = players.get(i).getBrain().proposeMutation());
+			for(Mutation m : proposals) {
+				if(m != null) m.assign(history);
+			}
+			IntStream.range(0, players.size()).parallel().filter(i -> proposals[i] != null)
+					.forEach(i -> players.get(i).getBrain().applyMutation(proposals[i]));
+		} else {
+			for(Player p : players) {
+				history = p.mutate(history);
+			}
+		}
+		ArrayList<Genome> living = new ArrayList<>();
 		for(Player p : players) {
-			history = p.mutate(history);
+			living.add(p.getBrain());
 		}
+		history.compact(living);
+		generationNum++;
 	}
 	
 	@Override
@@ -214,6 +301,89 @@ public class Population{
 		this.history = history;
 	}
 	
+	/**
+	 * @return the seed this population's random streams were split from, which can be passed to the constructor to
+	 * repeat a run
+	 */
+	public long getSeed(){
+		return seed;
+	}
+	
+	public CompatibilityDistance getCompatibility(){
+		return compatibility;
+	}
+	
+	/**
+	 * @param compatibility the measure deciding which species players belong to, given to every species at the
+	 *                      next speciate
+	 */
+	public void setCompatibility(CompatibilityDistance compatibility){
+		this.compatibility = compatibility;
+	}
+	
+	/**
+	 * @return the compatibility threshold the next speciate will use
+	 */
+	public double getThreshold(){
+		return compatibility.getThreshold();
+	}
+	
+	/**
+	 * @return the number of species found by the last speciate
+	 */
+	public int getSpeciesCount(){
+		return species.size();
+	}
+	
+	public ThresholdController getController(){
+		return controller;
+	}
+	
+	/**
+	 * @param controller adjusts the compatibility threshold after every speciate to bound the number of species, or
+	 *                   null (the default) to keep the threshold fixed
+	 */
+	public void setController(ThresholdController controller){
+		this.controller = controller;
+	}
+	
+	public int getIndexThreshold(){
+		return indexThreshold;
+	}
+	
+	/**
+	 * @param indexThreshold the number of species from which speciate looks players up by sketch rather than
+	 *                       checking every species
+	 */
+	public void setIndexThreshold(int indexThreshold){
+		this.indexThreshold = indexThreshold;
+	}
+	
+	public boolean isExactSpeciation(){
+		return exactSpeciation;
+	}
+	
+	/**
+	 * @param exactSpeciation whether a player that fits none of the species its sketch suggests is checked against
+	 *                        every other species before it starts a new one (the default), so that it is never
+	 *                        missed; without, speciate can start a species that would have fit an existing one
+	 */
+	public void setExactSpeciation(boolean exactSpeciation){
+		this.exactSpeciation = exactSpeciation;
+	}
+	
+	public boolean isParallel(){
+		return parallel;
+	}
+	
+	/**
+	 * @param parallel whether mutate and speciate should spread the players over the common fork-join pool (the
+	 *                 default)
+	 */
+	public void setParallel(boolean parallel){
+		this.parallel = parallel;
+	}
+	
 	public int getGenerationNum(){
 		return generationNum;
 	}
@@ -229,4 +399,60 @@ public class Population{
 	public void setPlayers(ArrayList<Player> players){
 		this.players = players;
 	}
+	
+	public TopologyCache getTopologies(){
+		return topologies;
+	}
+	
+	/**
+	 * Allow (or stop allowing) every player's genome to evolve connections that lead backwards through the network.
+	 * Children inherit it through crossOver.
+	 *
+	 * @param recurrent whether genomes should be recurrent
+	 */
+	public void setRecurrent(boolean recurrent){
+		for(Player p : players) {
+			p.getBrain().setRecurrent(recurrent);
+		}
+	}
+	
+	/**
+	 * Evaluate the networks of every player level by level with dense matrices, which is faster once networks have
+	 * grown densely connected. Children inherit it through crossOver.
+	 *
+	 * @param dense whether networks should be evaluated densely
+	 */
+	public void setDense(boolean dense){
+		for(Player p : players) {
+			p.getBrain().setDense(dense);
+		}
+	}
+	
+	/**
+	 * Compute the activation functions of every player's network approximately, through lookup tables, or exactly.
+	 * Only this population's genomes are affected. Children inherit it through crossOver.
+	 *
+	 * @param fast whether activations should be approximated
+	 */
+	public void setFast(boolean fast){
+		for(Player p : players) {
+			p.getBrain().setFast(fast);
+		}
+	}
+	
+	public Precision getPrecision(){
+		return precision;
+	}
+	
+	/**
+	 * Evaluate the networks of every player in the provided precision. Children inherit it through crossOver.
+	 *
+	 * @param precision the precision to evaluate networks in
+	 */
+	public void setPrecision(Precision precision){
+		this.precision = precision;
+		for(Player p : players) {
+			p.getBrain().setPrecision(precision);
+		}
+	}
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class runs a Genome's network one time step at a time, keeping every node's value between steps so that
+ * connections may lead backwards (or from a node to itself). Nodes are computed in network order, and each node sums
+ * the current value of every node it is connected from: nodes earlier in the order have already been computed in
+ * this step, while nodes later in the order (and the node itself) still hold their value from the previous step. For
+ * a genome without backward connections this gives exactly the same results as the compiled network.
+ */
+
+package NEAT;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class RecurrentNetwork implements NetworkEvaluator {
+    private final int inputSize;
+    private final int outputSize;
+    private final int inputCount;
+    private final int[] inputIndex;
+    private final int biasIndex;
+    private final int[] outputIndex;
+    
+    private final int[] into;
+    private final int[] from;
+    private final double[] weight;
+    private final byte[] activation;
+    private final boolean fast;
+    private final double[] state;
+    
+    /**
+     * Build a recurrent network from the network order of a genome. Genes are grouped by the node they lead into.
+     * @param g the genome, whose network list has already been built
+     */
+    public RecurrentNetwork(Genome g) {
+        inputSize = g.getInputSize();
+        outputSize = g.getOutputSize();
+        
+        HashMap<Integer, Integer> index = new HashMap<>();
+        int count = 0;
+        int inputs = 0;
+        activation = new byte[g.getNetwork().size()];
+        fast = g.isFast();
+        for (Node n : g.getNetwork()) {
+            activation[count] = n.getActivation().getID();
+            index.put(n.getID(), count++);
+            if (n.getLayer() == 0) inputs++;
+        }
+        inputCount = inputs;
+        state = new double[count];
+        
+        inputIndex = new int[inputSize];
+        for (int i = 0; i < inputSize; i++) {
+            inputIndex[i] = index.getOrDefault(i, -1);
+        }
+        biasIndex = index.getOrDefault(g.getBiasNodeID(), -1);
+        outputIndex = new int[outputSize];
+        for (int i = 0; i < outputSize; i++) {
+            outputIndex[i] = index.getOrDefault(inputSize + 1 + i, -1);
+        }
+        
+        int[] edgeFrom = new int[g.getGenes().size()];
+        int[] edgeTo = new int[edgeFrom.length];
+        double[] edgeWeight = new double[edgeFrom.length];
+        int edges = 0;
+        for (Gene gene : g.getGenes()) {
+            if (!gene.isEnabled()) continue;
+            Integer a = index.get(gene.getFromNode().getID());
+            Integer b = index.get(gene.getToNode().getID());
+            if (a == null || b == null || b < inputCount) continue;
+            edgeFrom[edges] = a;
+            edgeTo[edges] = b;
+            edgeWeight[edges] = gene.getWeight();
+            edges++;
+        }
+        
+        into = new int[count + 1];
+        for (int e = 0; e < edges; e++) {
+            into[edgeTo[e] + 1]++;
+        }
+        for (int i = 0; i < count; i++) {
+            into[i + 1] += into[i];
+        }
+        from = new int[edges];
+        weight = new double[edges];
+        int[] next = Arrays.copyOf(into, count);
+        for (int e = 0; e < edges; e++) {
+            int slot = next[edgeTo[e]]++;
+            from[slot] = edgeFrom[e];
+            weight[slot] = edgeWeight[e];
+        }
+    }
+    
+    /**
+     * Advance the network by one time step
+     * @param ins  the values to feed the network, one per input node
+     * @param outs the array to fill, one value per output node
+     */
+    public void step(double[] ins, double[] outs) {
+        double[] v = state;
+        for (int i = 0; i < inputSize; i++) {
+            if (inputIndex[i] != -1) v[inputIndex[i]] = ins[i];
+        }
+        if (biasIndex != -1) v[biasIndex] = 1d;
+        
+        for (int n = inputCount; n < v.length; n++) {
+            double sum = 0d;
+            for (int e = into[n]; e < into[n + 1]; e++) {
+                sum += v[from[e]] * weight[e];
+            }
+            v[n] = Activation.fromID(activation[n]).apply(sum, fast);
+        }
+        
+        for (int i = 0; i < outputSize; i++) {
+            outs[i] = outputIndex[i] != -1 ? v[outputIndex[i]] : 0d;
+        }
+    }
+    
+    /**
+     * Advance the network by one time step, so that a recurrent genome can be run through runNetwork
+     */
+    @Override
+    public void evaluate(double[] ins, double[] outs) {
+        step(ins, outs);
+    }
+    
+    /**
+     * forget the values carried over from previous steps
+     */
+    public void reset() {
+        Arrays.fill(state, 0d);
+    }
+}
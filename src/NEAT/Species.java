@@ -20,7 +20,7 @@
 package NEAT;
 
 import java.util.ArrayList;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
 
 public class Species{
 	
@@ -31,8 +31,22 @@ public class Species{
 	private int specAge;
 	private int specStale;
 	private ArrayList<Player> speciesPlayer;
+	private SplittableRandom random;
+	private CompatibilityDistance compatibility = new CompatibilityDistance();
 	
 	public Species(int sID, Player r){
+		this(sID, r, new SplittableRandom());
+	}
+	
+	/**
+	 * Constructor whose choice of parents draws from a provided random stream
+	 *
+	 * @param sID    the species ID
+	 * @param r      the reference player
+	 * @param random the stream, typically split from the population's
+	 */
+	public Species(int sID, Player r, SplittableRandom random){
+		this.random = random;
 		specID = sID;
 		reference = r;
 		best = r;
@@ -42,6 +56,7 @@ public class Species{
 	}
 	
 	public Species(int sID){
+		random = new SplittableRandom();
 		specID = sID;
 		reference = null;
 		best = null;
@@ -49,54 +64,15 @@ public class Species{
 		speciesPlayer = new ArrayList<>();
 	}
 	
+	/**
+	 * Check whether a player is compatible with the reference player. Nothing changes, so players can be checked
+	 * from several threads at once; adding the player is up to the caller.
+	 *
+	 * @param p the player
+	 * @return whether the player is a member of this species
+	 */
 	public boolean memberOfSpecies(Player p){
-		double excess = getExcess(p, reference);
-		double wDiff = getWDiff(p, reference);
-		int normalizer = p.getBrain().getGenes().size() - 20;
-		if(normalizer < 1) normalizer = 1;
-		double excessCoeff = 1d;
-		double weightDiff = 0.5d;
-		double compat = excessCoeff * excess / normalizer + weightDiff * wDiff;
-		double comp = 3d;
-		if(compat < comp) {
-			speciesPlayer.add(p);
-			return true;
-		} else {
-			return false;
-		}
-	}
-	
-	private double getExcess(Player p, Player r){
-		Genome pg = p.getBrain();
-		Genome rg = r.getBrain();
-		double excess = 0d;
-		int temp;
-		for(Gene g : rg.getGenes()) {
-			temp = pg.matchingGene(g);
-			if(temp == -1) excess++;
-		}
-		return excess;
-	}
-	
-	private double getWDiff(Player p, Player r){
-		Genome pg = p.getBrain();
-		Genome rg = r.getBrain();
-		double diff = 0;
-		double matches = 0;
-		for(Gene g : pg.getGenes()) {
-			for(Gene g1 : rg.getGenes()) {
-				if(g.getGeneID() == g1.getGeneID()) {
-					matches++;
-					diff += Math.abs(g.getWeight() - g1.getWeight());
-					break;
-				}
-			}
-		}
-		if(matches == 0) {
-			return 1000;
-		} else {
-			return diff / matches;
-		}
+		return compatibility.isCompatible(p.getBrain(), reference.getBrain());
 	}
 	
 	public Player reproduce(){
@@ -112,12 +88,12 @@ public class Species{
 	}
 	
 	public Player selectPlayer(){
-		double rand = ThreadLocalRandom.current().nextDouble();
-		int index = ThreadLocalRandom.current().nextInt(speciesPlayer.size());
+		double rand = random.nextDouble();
+		int index = random.nextInt(speciesPlayer.size());
 		double temp = 0.07d * Math.exp(-0.07d * index);
 		int counter = 0;
 		while (temp < rand && counter < speciesPlayer.size() * 10) {
-			index = ThreadLocalRandom.current().nextInt(speciesPlayer.size());
+			index = random.nextInt(speciesPlayer.size());
 			temp = 0.07d * Math.exp(-0.07d * index);
 			counter++;
 		}
@@ -239,4 +215,23 @@ public class Species{
 	public void setSpeciesPlayer(ArrayList<Player> speciesPlayer){
 		this.speciesPlayer = speciesPlayer;
 	}
+	
+	public CompatibilityDistance getCompatibility(){
+		return compatibility;
+	}
+	
+	/**
+	 * @param compatibility the measure deciding which players are members, typically shared by the whole population
+	 */
+	public void setCompatibility(CompatibilityDistance compatibility){
+		this.compatibility = compatibility;
+	}
+	
+	public SplittableRandom getRandom(){
+		return random;
+	}
+	
+	public void setRandom(SplittableRandom random){
+		this.random = random;
+	}
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class finds the species a player belongs to without checking it against every species. Each reference genome
+ * gets a MinHash sketch of its gene IDs: for each of BANDS * ROWS hash functions, the smallest hash of any of its
+ * IDs. Two genomes agree on any one of those minimums with a chance equal to the share of their IDs they have in
+ * common, so genomes sharing most of their genes are likely to agree on every row of at least one band. The index
+ * keeps the species in buckets by each band of their reference's sketch, and a player is checked exactly, in species
+ * order, only against the species in its own buckets. If none of those fits and the index is exact, the remaining
+ * species are checked as well, so no player starts a new species that would have fit an existing one. Below
+ * DEFAULT_MIN_SPECIES species the sketches are not worth their cost, and every species is simply checked in order.
+ */
+
+package NEAT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+
+class SpeciesIndex {
+    static final int BANDS = 16;
+    static final int ROWS = 2;
+    static final int DEFAULT_MIN_SPECIES = 64;
+    private static final long[] SEEDS = new SplittableRandom(0x5EEDL).longs(BANDS * ROWS).toArray();
+    private final ArrayList<Species> species;
+    private final HashMap<Long, ArrayList<Integer>> buckets = new HashMap<>();
+    private final boolean exact;
+    private final int minSpecies;
+    private int indexed;
+    
+    /**
+     * @param species    the species to search, in order; species added to the list later must be added with add
+     * @param exact      whether to check every species when none of the candidates fits
+     * @param minSpecies the number of species below which every species is checked in order
+     */
+    SpeciesIndex(ArrayList<Species> species, boolean exact, int minSpecies) {
+        this.species = species;
+        this.exact = exact;
+        this.minSpecies = minSpecies;
+        if (species.size() >= minSpecies) {
+            indexAll();
+        }
+    }
+    
+    /**
+     * Add a species to the end of the list, and to the buckets once there are enough species to use them
+     * @param s the new species
+     */
+    void add(Species s) {
+        species.add(s);
+        if (species.size() < minSpecies) return;
+        indexAll();
+    }
+    
+    /**
+     * Put every species not yet in the buckets into them
+     */
+    private void indexAll() {
+        while (indexed < species.size()) {
+            long[] sketch = sketch(species.get(indexed).getReference().getBrain());
+            for (int band = 0; band < BANDS; band++) {
+                buckets.computeIfAbsent(bucket(sketch, band), k -> new ArrayList<>()).add(indexed);
+            }
+            indexed++;
+        }
+    }
+    
+    /**
+     * Find the first species a player is a member of, among the candidates sharing a bucket with it (and, if the
+     * index is exact and none of them fits, among the rest). The index may be searched from several threads at
+     * once, as long as nothing is added meanwhile.
+     * @param p the player
+     * @return the position of the species in the list, or -1 if the player fits none
+     */
+    int find(Player p) {
+        int size = species.size();
+        if (indexed < size) {
+            for (int i = 0; i < size; i++) {
+                if (species.get(i).memberOfSpecies(p)) return i;
+            }
+            return -1;
+        }
+        long[] sketch = sketch(p.getBrain());
+        BitSet candidates = new BitSet(size);
+        for (int band = 0; band < BANDS; band++) {
+            ArrayList<Integer> list = buckets.get(bucket(sketch, band));
+            if (list == null) continue;
+            for (int i : list) {
+                candidates.set(i);
+            }
+        }
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (species.get(i).memberOfSpecies(p)) return i;
+        }
+        if (exact) {
+            for (int i = candidates.nextClearBit(0); i < size; i = candidates.nextClearBit(i + 1)) {
+                if (species.get(i).memberOfSpecies(p)) return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * @param g a genome
+     * @return the smallest hash of the genome's gene IDs under each of the BANDS * ROWS hash functions
+     */
+    static long[] sketch(Genome g) {
+        long[] sketch = new long[BANDS * ROWS];
+        Arrays.fill(sketch, Long.MAX_VALUE);
+        for (Gene gene : g.getGenes()) {
+            long ID = gene.getGeneID();
+            for (int i = 0; i < sketch.length; i++) {
+                long h = mix(ID ^ SEEDS[i]);
+                if (h < sketch[i]) sketch[i] = h;
+            }
+        }
+        return sketch;
+    }
+    
+    /**
+     * @return the bucket key of one band of a sketch, which includes the band so that bands do not share buckets
+     */
+    private static long bucket(long[] sketch, int band) {
+        long h = band;
+        for (int row = 0; row < ROWS; row++) {
+            h = mix(h * 31 + sketch[band * ROWS + row]);
+        }
+        return h;
+    }
+    
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+    
+    int getIndexedCount() {
+        return indexed;
+    }
+}
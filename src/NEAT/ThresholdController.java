@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class steers the compatibility threshold toward a target number of species. The species count is noisy from
+ * one generation to the next, so the controller keeps an exponential moving average of it, weighting the previous
+ * average by the damping and the new count by the rest. After each speciation the relative error of the average,
+ * (average - target) / target, capped at 1 so that a far too high count moves the threshold no faster than one twice
+ * the target, is scaled by the gain and added to the threshold. Too many species raise the threshold, so that more
+ * players fit each one; too few lower it, and an average on target leaves it alone. A count that swings back and
+ * forth around the target then moves the threshold much less than it would unsmoothed.
+ */
+
+package NEAT;
+
+public class ThresholdController {
+    public static final double DEFAULT_GAIN = 0.5d;
+    public static final double DEFAULT_DAMPING = 0.5d;
+    public static final double DEFAULT_MINIMUM = 0.1d;
+    private int target;
+    private double gain;
+    private double damping;
+    private double minimum;
+    private double adjustment;
+    private double average = -1;
+    
+    /**
+     * @param target the number of species to steer toward
+     */
+    public ThresholdController(int target) {
+        this(target, DEFAULT_GAIN, DEFAULT_DAMPING, DEFAULT_MINIMUM);
+    }
+    
+    /**
+     * @param target  the number of species to steer toward
+     * @param gain    the change in threshold for an average species count twice the target
+     * @param damping the weight of the previous average species count, from 0 (no smoothing) to below 1
+     * @param minimum the lowest threshold to set
+     */
+    public ThresholdController(int target, double gain, double damping, double minimum) {
+        this.target = Math.max(target, 1);
+        this.gain = gain;
+        this.damping = damping;
+        this.minimum = minimum;
+    }
+    
+    /**
+     * Fold the species count into the average (the first count starts it) and step the threshold by its error
+     * @param threshold    the current threshold
+     * @param speciesCount the number of species it produced
+     * @return the threshold for the next speciation
+     */
+    public double adjust(double threshold, int speciesCount) {
+        average = average < 0 ? speciesCount : damping * average + (1 - damping) * speciesCount;
+        double error = Math.min((average - target) / target, 1);
+        adjustment = gain * error;
+        return Math.max(minimum, threshold + adjustment);
+    }
+    
+    /**
+     * @return the moving average of the species count, or -1 before the first adjustment
+     */
+    public double getAverage() {
+        return average;
+    }
+    
+    /**
+     * @return the last change made to the threshold (before the minimum was applied)
+     */
+    public double getAdjustment() {
+        return adjustment;
+    }
+    
+    public int getTarget() {
+        return target;
+    }
+    
+    public void setTarget(int target) {
+        this.target = Math.max(target, 1);
+    }
+    
+    public double getGain() {
+        return gain;
+    }
+    
+    public void setGain(double gain) {
+        this.gain = gain;
+    }
+    
+    public double getDamping() {
+        return damping;
+    }
+    
+    public void setDamping(double damping) {
+        this.damping = damping;
+    }
+    
+    public double getMinimum() {
+        return minimum;
+    }
+    
+    public void setMinimum(double minimum) {
+        this.minimum = minimum;
+    }
+}
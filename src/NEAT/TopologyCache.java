@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * This class is a population-wide cache of network topologies, keyed by the fingerprint of the genomes they were
+ * built from. Genomes that are structurally identical (and only differ in their weights) then share a single
+ * topology. The cache holds a bounded number of topologies and evicts the least recently used one when it is full.
+ */
+
+package NEAT;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TopologyCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    private final int capacity;
+    private final LinkedHashMap<Key, NetworkTopology> topologies;
+    private long hits;
+    private long misses;
+    
+    /**
+     * Create a cache holding up to the default number of topologies
+     */
+    public TopologyCache() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Create a cache holding up to the provided number of topologies
+     * @param size the capacity of the cache
+     */
+    public TopologyCache(int size) {
+        capacity = size;
+        topologies = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, NetworkTopology> eldest) {
+                return size() > capacity;
+            }
+        };
+        hits = 0;
+        misses = 0;
+    }
+    
+    /**
+     * Compile a genome's network, reusing the topology of a structurally identical genome if there is one
+     * @param g the genome, whose network list has already been built
+     * @return the compiled network
+     */
+    public CompiledNetwork compile(Genome g) {
+        Key k = new Key(NetworkTopology.fingerprint(g));
+        NetworkTopology t;
+        synchronized (this) {
+            t = topologies.get(k);
+            if (t != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (t == null) {
+            t = new NetworkTopology(g);
+            synchronized (this) {
+                topologies.put(k, t);
+            }
+        }
+        return new CompiledNetwork(t, g);
+    }
+    
+    public synchronized void clear() {
+        topologies.clear();
+    }
+    
+    public synchronized int size() {
+        return topologies.size();
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * A fingerprint, wrapped so that it can be compared by its contents
+     */
+    private static final class Key {
+        private final int[] fingerprint;
+        private final int hash;
+        
+        private Key(int[] f) {
+            fingerprint = f;
+            hash = Arrays.hashCode(f);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return Arrays.equals(fingerprint, ((Key) o).fingerprint);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ActivationTest{
+	
+	@Test
+	void apply(){
+		assertEquals(0.5d, Activation.SIGMOID.apply(0d));
+		assertEquals(0d, Activation.RELU.apply(-3d));
+		assertEquals(-3d, Activation.IDENTITY.apply(-3d));
+		assertEquals(1d, Activation.GAUSSIAN.apply(0d));
+	}
+	
+	@Test
+	void approximate(){
+		for(Activation a : Activation.values()) {
+			for(double x = -20d; x <= 20d; x += 0.0007d) {
+				assertEquals(a.apply(x), a.approximate(x), 2e-6, a + " at " + x);
+			}
+		}
+	}
+	
+	@Test
+	void fromID(){
+		for(Activation a : Activation.values()) {
+			assertSame(a, Activation.fromID(a.getID()));
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdjacencyTest{
+	
+	/**
+	 * Count the free pairs of a genome the slow way
+	 */
+	private int free(Genome g){
+		int count = 0;
+		for(Node a : g.getNodes()) {
+			for(Node b : g.getNodes()) {
+				boolean legal = g.isRecurrent() ? b.getLayer() != 0 : a.getDepth() < b.getDepth();
+				if(!legal) continue;
+				boolean connected = false;
+				for(Gene gene : g.getGenes()) {
+					int from = gene.getFromNode().getID();
+					int to = gene.getToNode().getID();
+					if(from == a.getID() && to == b.getID() || !g.isRecurrent() && from == b.getID() && to == a.getID()) {
+						connected = true;
+					}
+				}
+				if(!connected) count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Mutate a genome and check that no pair of nodes ever gains a second gene, which would mean the adjacency kept
+	 * up to date by the genome had fallen out of step with its genes
+	 */
+	private void mutate(Genome g, int mutations){
+		History h = new History(new ArrayList<>(g.getGenes()));
+		for(int i = 0; i < mutations; i++) {
+			h = g.mutateGenome(h);
+		}
+		HashSet<Long> pairs = new HashSet<>();
+		for(Gene gene : g.getGenes()) {
+			long pair = (long) gene.getFromNode().getID() << 32 | gene.getToNode().getID();
+			assertTrue(pairs.add(pair));
+		}
+		assertEquals(free(g), new Adjacency(g).getFree());
+	}
+	
+	@Test
+	void feedForward(){
+		for(int t = 0; t < 20; t++) {
+			mutate(new Genome(4, 3), 300);
+		}
+	}
+	
+	@Test
+	void recurrent(){
+		for(int t = 0; t < 20; t++) {
+			Genome g = new Genome(3, 2);
+			g.setRecurrent(true);
+			mutate(g, 300);
+		}
+	}
+	
+	@Test
+	void shared(){
+		Genome a = new Genome(4, 3);
+		History h = new History(new ArrayList<>(a.getGenes()));
+		for(int i = 0; i < 200; i++) {
+			h = a.mutateGenome(h);
+		}
+		Adjacency links = a.getLinks();
+		int free = links.getFree();
+		Genome b = a.copy();
+		Genome child = a.crossOver(b);
+		assertTrue(b.getLinks().isCurrent(b));
+		assertTrue(child.getLinks().isCurrent(child));
+		for(int i = 0; i < 200; i++) {
+			h = b.mutateGenome(h);
+			h = child.mutateGenome(h);
+		}
+		assertSame(links, a.getLinks());
+		assertEquals(free, links.getFree());
+		assertEquals(free(a), free);
+		for(Genome g : new Genome[]{b, child}) {
+			assertTrue(g.getLinks().isCurrent(g));
+			assertEquals(free(g), g.getLinks().getFree());
+		}
+	}
+	
+	@Test
+	void pick(){
+		Genome g = new Genome(3, 2);
+		Adjacency a = new Adjacency(g);
+		assertEquals(0, a.getFree());
+		Node hidden = new Node(1, 10);
+		hidden.setDepth(0.5d);
+		g.getNodes().add(hidden);
+		a = new Adjacency(g);
+		assertEquals(6, a.getFree());
+		for(int r = 0; r < a.getFree(); r++) {
+			int[] pair = a.pick(r);
+			assertTrue(g.getNodes().get(pair[0]).getDepth() < g.getNodes().get(pair[1]).getDepth());
+		}
+	}
+}
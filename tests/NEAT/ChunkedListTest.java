@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChunkedListTest{
+	
+	@Test
+	void list(){
+		ChunkedList<Integer> list = new ChunkedList<>();
+		ArrayList<Integer> expected = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			list.add(i);
+			expected.add(i);
+		}
+		list.add(40, -1);
+		expected.add(40, -1);
+		list.remove(7);
+		expected.remove(7);
+		list.set(90, -2);
+		expected.set(90, -2);
+		assertEquals(expected, list);
+	}
+	
+	@Test
+	void share(){
+		ChunkedList<Integer> a = new ChunkedList<>();
+		for(int i = 0; i < 100; i++) {
+			a.add(i);
+		}
+		ArrayList<Integer> before = new ArrayList<>(a);
+		ChunkedList<Integer> b = a.share();
+		b.set(3, -1);
+		b.add(100);
+		b.remove(50);
+		assertEquals(before, a);
+		a.set(70, -2);
+		a.add(-3);
+		assertEquals(-1, b.get(3));
+		assertEquals(69, b.get(68));
+		assertEquals(71, b.get(70));
+		assertEquals(100, b.size());
+		assertEquals(-2, a.get(70));
+		assertEquals(-3, a.get(100));
+		ChunkedList<Integer> c = b.share();
+		c.clear();
+		assertEquals(100, b.size());
+	}
+}
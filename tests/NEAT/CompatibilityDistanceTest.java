@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompatibilityDistanceTest{
+	
+	/**
+	 * The distance counted the slow way, gene by gene against a map of the other genome's genes
+	 */
+	private double expected(CompatibilityDistance d, Genome a, Genome b){
+		HashMap<Integer, Gene> aGenes = new HashMap<>();
+		HashMap<Integer, Gene> bGenes = new HashMap<>();
+		int aMax = -1;
+		int bMax = -1;
+		for(Gene g : a.getGenes()) {
+			aGenes.put(g.getGeneID(), g);
+			aMax = Math.max(aMax, g.getGeneID());
+		}
+		for(Gene g : b.getGenes()) {
+			bGenes.put(g.getGeneID(), g);
+			bMax = Math.max(bMax, g.getGeneID());
+		}
+		int excess = 0;
+		int disjoint = 0;
+		int matching = 0;
+		double diff = 0;
+		for(Gene g : a.getGenes()) {
+			Gene other = bGenes.get(g.getGeneID());
+			if(other != null) {
+				matching++;
+				diff += Math.abs(g.getWeight() - other.getWeight());
+			} else if(g.getGeneID() > bMax) {
+				excess++;
+			} else {
+				disjoint++;
+			}
+		}
+		for(Gene g : b.getGenes()) {
+			if(!aGenes.containsKey(g.getGeneID())) {
+				if(g.getGeneID() > aMax) {
+					excess++;
+				} else {
+					disjoint++;
+				}
+			}
+		}
+		int n = Math.max(Math.max(a.getGenes().size(), b.getGenes().size()) - CompatibilityDistance.SMALL_GENOME, 1);
+		double w = matching == 0 ? CompatibilityDistance.NO_MATCH_DIFFERENCE : diff / matching;
+		return (d.getExcessCoefficient() * excess + d.getDisjointCoefficient() * disjoint) / n
+				+ d.getWeightCoefficient() * w;
+	}
+	
+	@Test
+	void distance(){
+		Genome a = new Genome(3, 2);
+		History h = a.buildHistory();
+		for(int i = 0; i < 150; i++) {
+			h = a.mutateGenome(h);
+		}
+		Genome b = a.copy();
+		Genome c = a.copy();
+		for(int i = 0; i < 150; i++) {
+			h = b.mutateGenome(h);
+			h = c.mutateGenome(h);
+		}
+		CompatibilityDistance d = new CompatibilityDistance(1.5, 0.7, 0.4, 3);
+		assertEquals(0, d.distance(a, a), 1e-12);
+		assertEquals(expected(d, a, b), d.distance(a, b), 1e-12);
+		assertEquals(expected(d, b, c), d.distance(b, c), 1e-12);
+		assertEquals(d.distance(b, c), d.distance(c, b), 1e-12);
+	}
+	
+	@Test
+	void isCompatible(){
+		Genome a = new Genome(3, 2);
+		Genome b = a.copy();
+		CompatibilityDistance d = new CompatibilityDistance();
+		assertTrue(d.isCompatible(a, b));
+		d.setThreshold(0);
+		assertFalse(d.isCompatible(a, b));
+		Genome other = new Genome(3, 2, true);
+		other.getGenes().add(new Gene(new Node(0, 0), new Node(1, 4), 99, 0.5));
+		d.setThreshold(CompatibilityDistance.DEFAULT_THRESHOLD);
+		assertFalse(d.isCompatible(a, other));
+	}
+	
+	@Test
+	void cache(){
+		Genome a = new Genome(3, 2);
+		History h = a.buildHistory();
+		Genome b = a.copy();
+		for(int i = 0; i < 50; i++) {
+			h = b.mutateGenome(h);
+		}
+		CompatibilityDistance d = new CompatibilityDistance();
+		double first = d.distance(b, a);
+		assertEquals(first, d.distance(b, a));
+		assertEquals(1, d.getHits());
+		assertEquals(first, d.distance(b, a.copy()));
+		assertEquals(2, d.getHits());
+		h = b.mutateGenome(h);
+		assertEquals(expected(d, b, a), d.distance(b, a), 1e-12);
+		assertEquals(2, d.getHits());
+		assertEquals(2, d.getMisses());
+		d.setCacheSize(3);
+		assertEquals(4, d.getCacheSize());
+		d.setCacheSize(0);
+		d.distance(b, a);
+		d.distance(b, a);
+		assertEquals(2, d.getHits());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledNetworkTest{
+	
+	private Genome genome;
+	private History history;
+	
+	@BeforeEach
+	void setUp(){
+		genome = new Genome(4, 3);
+		history = genome.buildHistory();
+		for(int i = 0; i < 200; i++) {
+			history = genome.mutateGenome(history);
+		}
+		Activation[] activations = Activation.values();
+		for(Node n : genome.getNodes()) {
+			n.setActivation(activations[ThreadLocalRandom.current().nextInt(activations.length)]);
+		}
+		genome.buildNetwork();
+	}
+	
+	/**
+	 * Walk the Node and Gene objects directly, the way runNetwork used to
+	 */
+	private double[] interpret(Genome g, double[] ins){
+		g.clearNodeOutputs();
+		g.connectNodes();
+		for(int i = 0; i < g.getInputSize(); i++) {
+			g.getNodes().get(i).addInput(ins[i]);
+		}
+		g.getNodes().get(g.getInputSize()).addInput(1d);
+		for(Node n : g.getNetwork()) {
+			n.computeOut();
+		}
+		double[] outs = new double[g.getOutputSize()];
+		for(int i = 0; i < outs.length; i++) {
+			outs[i] = g.getNodes().get(g.getInputSize() + 1 + i).getOutputs();
+		}
+		for(Node n : g.getNodes()) {
+			n.clearValues();
+		}
+		return outs;
+	}
+	
+	@Test
+	void run(){
+		for(int t = 0; t < 50; t++) {
+			double[] ins = new double[4];
+			for(int i = 0; i < ins.length; i++) {
+				ins[i] = ThreadLocalRandom.current().nextDouble(-2, 2);
+			}
+			assertArrayEquals(interpret(genome, ins), genome.runNetwork(ins), 1e-12);
+		}
+	}
+	
+	@Test
+	void runBatch(){
+		double[][] ins = new double[64][4];
+		for(double[] row : ins) {
+			for(int i = 0; i < row.length; i++) {
+				row[i] = ThreadLocalRandom.current().nextDouble(-2, 2);
+			}
+		}
+		double[][] outs = genome.runNetworkBatch(ins);
+		for(int r = 0; r < ins.length; r++) {
+			assertArrayEquals(genome.runNetwork(ins[r]), outs[r], 1e-12);
+		}
+	}
+	
+	@Test
+	void getNodeCount(){
+		assertTrue(genome.getCompiled().getNodeCount() <= genome.getNetwork().size());
+	}
+	
+	@Test
+	void pruning(){
+		Genome g = new Genome(2, 1);
+		g.buildNetwork();
+		Node hidden = new Node(1, 10);
+		hidden.setDepth(0.5d);
+		Gene in = new Gene(g.getNodes().get(0), hidden, 20, 0.5d);
+		Gene out = new Gene(hidden, g.getNodes().get(3), 21, 0.5d);
+		g.getNodes().add(hidden);
+		g.getGenes().add(in);
+		g.getGenes().add(out);
+		g.buildNetwork();
+		assertEquals(5, g.getCompiled().getNodeCount());
+		assertEquals(5, g.getCompiled().getGeneCount());
+		out.setEnabled(false);
+		g.buildNetwork();
+		assertEquals(4, g.getCompiled().getNodeCount());
+		assertEquals(3, g.getCompiled().getGeneCount());
+		assertArrayEquals(interpret(g, new double[]{0.7d, -0.4d}), g.runNetwork(new double[]{0.7d, -0.4d}), 1e-12);
+	}
+}
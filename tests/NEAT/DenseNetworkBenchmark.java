@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+/**
+ * Time the gene-by-gene compiled network against the dense one on a densely connected genome, and report both. This
+ * is run by hand rather than as part of the test suite.
+ */
+class DenseNetworkBenchmark{
+	
+	private static final int RUNS = 20000;
+	
+	public static void main(String[] args){
+		Genome g = DenseNetworkTest.layered();
+		CompiledNetwork c = g.getCompiled();
+		DenseNetwork d = new DenseNetwork(c);
+		double[] ins = DenseNetworkTest.random(DenseNetworkTest.WIDTH);
+		double[] outs = new double[8];
+		double sink = 0d;
+		for(int warm = 0; warm < 2; warm++) {
+			long t0 = System.nanoTime();
+			for(int i = 0; i < RUNS; i++) {
+				c.evaluate(ins, outs);
+				sink += outs[0];
+			}
+			long t1 = System.nanoTime();
+			for(int i = 0; i < RUNS; i++) {
+				d.evaluate(ins, outs);
+				sink += outs[0];
+			}
+			long t2 = System.nanoTime();
+			if(warm == 1) {
+				System.out.println("Gene by gene: " + (t1 - t0) / RUNS + "ns, dense: " + (t2 - t1) / RUNS
+						+ "ns per evaluation of " + c.getGeneCount() + " genes (checksum " + sink + ")");
+			}
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DenseNetworkTest{
+	
+	static final int WIDTH = 48;
+	private static final int DEPTH = 4;
+	
+	/**
+	 * Build a genome with several fully connected hidden layers between its inputs and outputs
+	 */
+	static Genome layered(){
+		Genome g = new Genome(WIDTH, 8);
+		int ID = 1000;
+		int geneID = 1000;
+		ArrayList<Node> previous = new ArrayList<>(g.getNodes().subList(0, WIDTH + 1));
+		for(int d = 1; d <= DEPTH + 1; d++) {
+			ArrayList<Node> layer = new ArrayList<>();
+			if(d <= DEPTH) {
+				for(int i = 0; i < WIDTH; i++) {
+					Node n = new Node(d, ID++);
+					n.setDepth((double) d / (DEPTH + 1));
+					g.getNodes().add(n);
+					layer.add(n);
+				}
+			} else {
+				layer.addAll(g.getNodes().subList(WIDTH + 1, WIDTH + 9));
+			}
+			for(Node to : layer) {
+				for(Node from : previous) {
+					g.getGenes().add(new Gene(from, to, geneID++, ThreadLocalRandom.current().nextDouble(-1, 1)));
+				}
+			}
+			previous = layer;
+		}
+		g.buildNetwork();
+		return g;
+	}
+	
+	static double[] random(int size){
+		double[] values = new double[size];
+		for(int i = 0; i < size; i++) {
+			values[i] = ThreadLocalRandom.current().nextDouble(-2, 2);
+		}
+		return values;
+	}
+	
+	@Test
+	void evaluate(){
+		Activation[] activations = Activation.values();
+		for(int t = 0; t < 50; t++) {
+			Genome g = new Genome(5, 3);
+			History h = g.buildHistory();
+			for(int i = 0; i < 300; i++) {
+				h = g.mutateGenome(h);
+			}
+			for(Node n : g.getNodes()) {
+				n.setActivation(activations[ThreadLocalRandom.current().nextInt(activations.length)]);
+			}
+			g.buildNetwork();
+			CompiledNetwork c = g.getCompiled();
+			for(double threshold : new double[]{0d, DenseNetwork.DEFAULT_DENSITY, 2d}) {
+				DenseNetwork d = new DenseNetwork(c, threshold);
+				assertEquals(c.getGeneCount(), d.getGeneCount());
+				double[] ins = random(5);
+				double[] outs = new double[3];
+				d.evaluate(ins, outs);
+				assertArrayEquals(c.run(ins), outs, 1e-9);
+			}
+		}
+	}
+	
+	@Test
+	void levels(){
+		Genome g = layered();
+		DenseNetwork d = new DenseNetwork(g.getCompiled());
+		assertEquals(DEPTH + 2, d.getLevelCount());
+		assertEquals(DEPTH + 1, d.getDenseLevelCount());
+		assertEquals(0, new DenseNetwork(g.getCompiled(), 2d).getDenseLevelCount());
+	}
+	
+	@Test
+	void runBatch(){
+		Genome g = layered();
+		g.setDense(true);
+		double[] ins = random(WIDTH * 300);
+		double[] dense = g.runNetworkBatch(ins, 300);
+		double[] compiled = g.getCompiled().runBatch(ins, 300);
+		assertArrayEquals(compiled, dense, 1e-9);
+		double[] row = Arrays.copyOfRange(ins, WIDTH, 2 * WIDTH);
+		assertArrayEquals(Arrays.copyOfRange(compiled, 8, 16), g.runNetwork(row), 1e-9);
+	}
+}
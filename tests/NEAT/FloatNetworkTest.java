@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FloatNetworkTest{
+	
+	private static final int GENOMES = 200;
+	private static final int SAMPLES = 50;
+	
+	@Test
+	void divergence(){
+		double max = maxDivergence();
+		assertTrue(max < 1e-4, "maximum float/double divergence " + max);
+	}
+	
+	/**
+	 * Evaluate random genomes in double and single precision and measure the largest difference between any of
+	 * their outputs. FloatNetworkDivergence prints it.
+	 * @return the largest difference found
+	 */
+	static double maxDivergence(){
+		double max = 0d;
+		for(int t = 0; t < GENOMES; t++) {
+			Genome g = new Genome(6, 4);
+			History h = g.buildHistory();
+			int mutations = ThreadLocalRandom.current().nextInt(200);
+			for(int i = 0; i < mutations; i++) {
+				h = g.mutateGenome(h);
+			}
+			g.buildNetwork();
+			FloatNetwork f = new FloatNetwork(g.getCompiled());
+			double[] ins = new double[6];
+			double[] outs = new double[4];
+			for(int s = 0; s < SAMPLES; s++) {
+				for(int i = 0; i < ins.length; i++) {
+					ins[i] = ThreadLocalRandom.current().nextDouble(-2, 2);
+				}
+				double[] expected = g.runNetwork(ins);
+				f.evaluate(ins, outs);
+				for(int i = 0; i < outs.length; i++) {
+					max = Math.max(max, Math.abs(expected[i] - outs[i]));
+				}
+			}
+		}
+		return max;
+	}
+	
+	@Test
+	void runBatch(){
+		Genome g = new Genome(3, 2);
+		g.setPrecision(Precision.FLOAT);
+		double[][] ins = {{0.1d, 0.2d, 0.3d}, {-1d, 1d, 0.5d}};
+		double[][] outs = g.runNetworkBatch(ins);
+		for(int r = 0; r < ins.length; r++) {
+			assertArrayEquals(g.runNetwork(ins[r]), outs[r], 1e-6);
+		}
+	}
+}
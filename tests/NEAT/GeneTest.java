@@ -23,6 +23,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 class GeneTest{
 	
 	@BeforeEach
@@ -39,5 +44,17 @@ class GeneTest{
 	
 	@Test
 	void mutateWeight(){
+		Node a = new Node(0, 0);
+		Node b = new Node(1, 1);
+		Gene g1 = new Gene(a, b, 0, 0.5);
+		Gene g2 = new Gene(a, b, 0, 0.5);
+		SplittableRandom r1 = new SplittableRandom(3);
+		SplittableRandom r2 = new SplittableRandom(3);
+		for(int i = 0; i < 1000; i++) {
+			g1.mutateWeight(r1);
+			g2.mutateWeight(r2);
+			assertEquals(g1.getWeight(), g2.getWeight());
+			assertTrue(g1.getWeight() >= -1 && g1.getWeight() <= 1);
+		}
 	}
 }
\ No newline at end of file
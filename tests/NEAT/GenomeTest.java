@@ -23,6 +23,15 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 class GenomeTest{
 	
 	@BeforeEach
@@ -33,35 +42,265 @@ class GenomeTest{
 	void tearDown(){
 	}
 	
+	/**
+	 * Describe everything about a genome's structure and weights that mutating it could change
+	 */
+	private String describe(Genome g){
+		StringBuilder s = new StringBuilder();
+		for(Node n : g.getNodes()) {
+			s.append(n.getID()).append(':').append(n.getDepth()).append(' ');
+		}
+		for(Gene gene : g.getGenes()) {
+			s.append(gene.getGeneID()).append(gene.isEnabled()).append(gene.getWeight()).append(' ');
+		}
+		return s.toString();
+	}
+	
 	@Test
 	void buildHistory(){
 	}
 	
 	@Test
 	void copy(){
+		Genome a = new Genome(3, 2);
+		History h = new History(new ArrayList<>(a.getGenes()));
+		for(int i = 0; i < 100; i++) {
+			h = a.mutateGenome(h);
+		}
+		Genome b = a.copy();
+		assertEquals(a.getGenes().size(), b.getGenes().size());
+		for(int i = 0; i < a.getGenes().size(); i++) {
+			assertSame(a.getGenes().get(i), b.getGenes().get(i));
+		}
+		String before = describe(a);
+		double[] ins = {0.3d, -0.7d, 1.1d};
+		double[] outs = a.runNetwork(ins);
+		for(int i = 0; i < 300; i++) {
+			h = b.mutateGenome(h);
+		}
+		assertEquals(before, describe(a));
+		assertArrayEquals(outs, a.runNetwork(ins));
+		for(Gene g : b.getGenes()) {
+			assertSame(b.getNodes().get(b.getNode(g.getFromNode())), g.getFromNode());
+		}
+	}
+	
+	@Test
+	void fast(){
+		Genome a = new Genome(3, 2);
+		History h = new History(new ArrayList<>(a.getGenes()));
+		for(int i = 0; i < 100; i++) {
+			h = a.mutateGenome(h);
+		}
+		Genome b = a.copy();
+		b.setFast(true);
+		assertTrue(b.copy().isFast());
+		double[] ins = {0.3d, -0.7d, 1.1d};
+		assertArrayEquals(a.runNetwork(ins), b.runNetwork(ins), 1e-5);
+		assertFalse(a.getCompiled().isFast());
+		assertTrue(b.getCompiled().isFast());
 	}
 	
 	@Test
 	void getNode(){
+		Genome g = new Genome(3, 2);
+		History h = g.buildHistory();
+		for(int i = 0; i < 200; i++) {
+			h = g.mutateGenome(h);
+		}
+		for(int i = 0; i < g.getNodes().size(); i++) {
+			assertEquals(i, g.getNode(g.getNodes().get(i)));
+		}
+		assertEquals(-1, g.getNode(new Node(1, 100000)));
+		Node far = new Node(1, Integer.MAX_VALUE - 1);
+		Node near = new Node(1, 50000);
+		g.getNodes().add(far);
+		assertEquals(g.getNodes().size() - 1, g.getNode(far));
+		g.getNodes().add(near);
+		assertEquals(g.getNodes().size() - 1, g.getNode(near));
+		assertEquals(g.getNodes().size() - 2, g.getNode(far));
+		for(int i = 0; i < g.getNodes().size(); i++) {
+			assertEquals(i, g.getNode(g.getNodes().get(i)));
+		}
 	}
 	
 	@Test
 	void getGene(){
+		Genome g = new Genome(3, 2);
+		History h = g.buildHistory();
+		for(int i = 0; i < 200; i++) {
+			h = g.mutateGenome(h);
+			int index = ThreadLocalRandom.current().nextInt(g.getGenes().size());
+			int found = g.getGene(g.getGenes().get(index));
+			assertTrue(found <= index);
+			assertEquals(g.getGenes().get(index).getGeneID(), g.getGenes().get(found).getGeneID());
+		}
+		Gene missing = new Gene(g.getNodes().get(0), g.getNodes().get(4), 100000, 1d);
+		assertEquals(-1, g.getGene(missing));
+		g.getGenes().add(missing);
+		assertEquals(g.getGenes().size() - 1, g.getGene(missing));
 	}
 	
 	@Test
 	void runNetwork(){
 	}
 	
+	@Test
+	void evaluate(){
+		Genome g = new Genome(3, 2);
+		double[] ins = {0.25d, -1d, 2d};
+		double[] outs = new double[2];
+		assertTrue(g.evaluate(ins, outs));
+		assertArrayEquals(g.runNetwork(ins), outs);
+		assertFalse(g.evaluate(ins, new double[3]));
+	}
+	
 	@Test
 	void mutateGenome(){
+		Genome g = new Genome(4, 2);
+		History h = g.buildHistory();
+		for(int i = 0; i < 300; i++) {
+			h = g.mutateGenome(h);
+			g.runNetwork(new double[]{0.1d, 0.2d, 0.3d, 0.4d});
+			assertEquals(g.getNodes().size(), g.getNetwork().size());
+			for(int j = 1; j < g.getNetwork().size(); j++) {
+				assertTrue(g.getNetwork().get(j - 1).getDepth() <= g.getNetwork().get(j).getDepth());
+			}
+			for(Gene gene : g.getGenes()) {
+				assertTrue(gene.getFromNode().getDepth() < gene.getToNode().getDepth());
+			}
+		}
+	}
+	
+	@Test
+	void layers(){
+		for(boolean recurrent : new boolean[]{false, true}) {
+			Genome a = new Genome(3, 2);
+			a.setRecurrent(recurrent);
+			History h = a.buildHistory();
+			for(int i = 0; i < 600; i++) {
+				h = a.mutateGenome(h);
+			}
+			Genome b = a.copy();
+			for(int i = 0; i < 200; i++) {
+				h = b.mutateGenome(h);
+			}
+			for(Genome g : new Genome[]{a, b, b.crossOver(a)}) {
+				for(Node n : g.getNodes()) {
+					assertEquals(n.getDepth() == 0, n.getLayer() == 0);
+					assertTrue(n.getLayer() < g.getLayers());
+				}
+				for(Gene gene : g.getGenes()) {
+					if(gene.getFromNode().getDepth() < gene.getToNode().getDepth()) {
+						assertTrue(gene.getFromNode().getLayer() < gene.getToNode().getLayer());
+					}
+				}
+			}
+		}
 	}
 	
 	@Test
 	void crossOver(){
+		Genome a = new Genome(3, 2);
+		History h = new History(new ArrayList<>(a.getGenes()));
+		for(int i = 0; i < 100; i++) {
+			h = a.mutateGenome(h);
+		}
+		Genome b = a.copy();
+		for(int i = 0; i < 100; i++) {
+			h = b.mutateGenome(h);
+		}
+		String parentA = describe(a);
+		String parentB = describe(b);
+		Genome child = a.crossOver(b);
+		assertEquals(a.getGenes().size(), child.getGenes().size());
+		for(int i = 0; i < child.getGenes().size(); i++) {
+			Gene g = child.getGenes().get(i);
+			assertEquals(a.getGenes().get(i).getGeneID(), g.getGeneID());
+			int match = b.matchingGene(g);
+			Gene mine = a.getGenes().get(i);
+			Gene theirs = match == -1 ? null : b.getGenes().get(match);
+			assertTrue(g == mine || g == theirs || theirs != null && g.getWeight() == theirs.getWeight()
+					&& g.getFromNode() == mine.getFromNode() && g.getToNode() == mine.getToNode());
+			assertEquals(i, child.matchingGene(g));
+		}
+		for(int i = 0; i < 300; i++) {
+			h = child.mutateGenome(h);
+		}
+		assertEquals(parentA, describe(a));
+		assertEquals(parentB, describe(b));
+		for(Gene g : child.getGenes()) {
+			assertSame(child.getNodes().get(child.getNode(g.getToNode())), g.getToNode());
+		}
+	}
+	
+	@Test
+	void copyOnWrite(){
+		Genome a = new Genome(3, 2);
+		History h = a.buildHistory();
+		for(int i = 0; i < 100; i++) {
+			h = a.mutateGenome(h);
+		}
+		String before = describe(a);
+		Genome b = a.copy();
+		while(b.proposeMutation() != null) {
+			b = a.copy();
+		}
+		int changed = 0;
+		for(int i = 0; i < a.getGenes().size(); i++) {
+			if(a.getGenes().get(i) != b.getGenes().get(i)) changed++;
+		}
+		assertEquals(1, changed);
+		for(int i = 0; i < a.getNodes().size(); i++) {
+			assertSame(a.getNodes().get(i), b.getNodes().get(i));
+		}
+		for(int t = 0; t < 50; t++) {
+			Genome c = a.copy();
+			Mutation m = c.proposeMutation();
+			if(m == null) continue;
+			m.assign(h);
+			c.applyMutation(m);
+			for(int i = 0; i < a.getNodes().size(); i++) {
+				Node x = a.getNodes().get(i);
+				Node y = c.getNodes().get(i);
+				assertTrue(x == y || x.getLayer() != y.getLayer() || x.getDepth() != y.getDepth());
+			}
+			for(int i = 0; i < a.getGenes().size(); i++) {
+				Gene x = a.getGenes().get(i);
+				Gene y = c.getGenes().get(i);
+				assertTrue(x == y || m.isNode() && x.getGeneID() == m.getGene().getGeneID()
+						|| x.getFromNode() != y.getFromNode() || x.getToNode() != y.getToNode());
+			}
+			for(Gene g : c.getGenes()) {
+				assertSame(c.getNodes().get(c.getNode(g.getFromNode())), g.getFromNode());
+				assertSame(c.getNodes().get(c.getNode(g.getToNode())), g.getToNode());
+			}
+		}
+		assertEquals(before, describe(a));
 	}
 	
 	@Test
 	void matchingGene(){
+		Genome a = new Genome(3, 2);
+		History h = a.buildHistory();
+		for(int i = 0; i < 100; i++) {
+			h = a.mutateGenome(h);
+		}
+		Genome b = a.copy();
+		for(int i = 0; i < 100; i++) {
+			h = b.mutateGenome(h);
+		}
+		for(Gene g : b.getGenes()) {
+			int index = a.matchingGene(g);
+			boolean found = false;
+			for(Gene other : a.getGenes()) {
+				if(other.getGeneID() == g.getGeneID()) {
+					assertEquals(a.getGenes().indexOf(other), index);
+					found = true;
+					break;
+				}
+			}
+			if(!found) assertEquals(-1, index);
+		}
 	}
 }
\ No newline at end of file
@@ -23,6 +23,16 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
 class HistoryTest{
 	
 	@BeforeEach
@@ -35,29 +45,145 @@ class HistoryTest{
 	
 	@Test
 	void copy(){
+		History h = new Genome(2, 1).buildHistory();
+		History c = h.copy();
+		assertEquals(h, c);
+		h.geneInnovation(new Node(0, 0), new Node(0, 1));
+		assertNotEquals(h, c);
 	}
 	
 	@Test
 	void addGeneInnovation(){
+		History h = new History();
+		Node a = new Node(0, 0);
+		Node b = new Node(1, 1);
+		h.addGeneInnovation(new Gene(a, b, 7, 0.5d));
+		assertEquals(7, h.containsGeneInnovation(a, b));
+		assertEquals(8, h.getNextGeneID());
+		assertEquals(8, h.geneInnovation(b, a));
 	}
 	
 	@Test
 	void addNodeInnovation(){
+		History h = new History();
+		Node a = new Node(0, 0);
+		Node b = new Node(1, 1);
+		Gene g = new Gene(a, b, 0, 0.5d);
+		h.addGeneInnovation(g);
+		Node n = new Node(1, 2, 0);
+		h.addNodeInnovation(n, new Gene(a, n, 1, 1d), new Gene(n, b, 2, 0.5d));
+		History.NodeInnovation i = h.nodeInnovation(g);
+		assertEquals(2, i.getNodeID());
+		assertEquals(1, i.getInID());
+		assertEquals(2, i.getOutID());
+		assertEquals(3, h.getNextNodeID());
 	}
 	
 	@Test
 	void containsGeneInnovation(){
+		Genome g = new Genome(2, 1);
+		History h = g.buildHistory();
+		for(Gene gene : g.getGenes()) {
+			assertEquals(gene.getGeneID(), h.containsGeneInnovation(gene.getFromNode(), gene.getToNode()));
+		}
+		assertEquals(-1, h.containsGeneInnovation(g.getNodes().get(3), g.getNodes().get(0)));
+		assertEquals(g.getGenes().size(), h.getNextGeneID());
+		assertEquals(g.getNodes().size(), h.getNextNodeID());
 	}
 	
 	@Test
 	void containsNodeInnovation(){
+		Genome g = new Genome(2, 1);
+		History h = g.buildHistory();
+		Gene gene = g.getGenes().get(0);
+		assertEquals(-1, h.containsNodeInnovation(gene));
+		int ID = h.nodeInnovation(gene).getNodeID();
+		assertEquals(4, ID);
+		assertEquals(ID, h.containsNodeInnovation(gene));
+		assertEquals(ID, h.nodeInnovation(gene).getNodeID());
 	}
 	
 	@Test
 	void getIDBeforeNode(){
+		Genome g = new Genome(2, 1);
+		History h = g.buildHistory();
+		Gene gene = g.getGenes().get(1);
+		History.NodeInnovation i = h.nodeInnovation(gene);
+		Node n = new Node(1, i.getNodeID(), gene.getGeneID());
+		assertEquals(i.getInID(), h.getIDBeforeNode(n));
+		assertEquals(i.getInID(), h.containsGeneInnovation(gene.getFromNode(), n));
+		assertEquals(-1, h.getIDBeforeNode(new Node(1, 50, 2)));
 	}
 	
 	@Test
 	void getIDAfterNode(){
+		Genome g = new Genome(2, 1);
+		History h = g.buildHistory();
+		Gene gene = g.getGenes().get(1);
+		History.NodeInnovation i = h.nodeInnovation(gene);
+		Node n = new Node(1, i.getNodeID(), gene.getGeneID());
+		assertEquals(i.getOutID(), h.getIDAfterNode(n));
+		assertEquals(i.getOutID(), h.containsGeneInnovation(n, gene.getToNode()));
+	}
+	
+	/**
+	 * Ask for the same innovations from many threads at once and check that they are only created once
+	 */
+	@Test
+	void concurrent() throws Exception{
+		Genome g = new Genome(4, 4);
+		History h = g.buildHistory();
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<int[]>> results = new ArrayList<>();
+		try {
+			for(int t = 0; t < 8; t++) {
+				results.add(pool.submit(() -> {
+					int[] IDs = new int[g.getGenes().size() * 2];
+					for(int i = 0; i < g.getGenes().size(); i++) {
+						IDs[2 * i] = h.nodeInnovation(g.getGenes().get(i)).getNodeID();
+						IDs[2 * i + 1] = h.geneInnovation(g.getNodes().get(8 - i % 4), g.getNodes().get(i % 5));
+					}
+					return IDs;
+				}));
+			}
+			int[] first = results.get(0).get();
+			for(Future<int[]> f : results) {
+				assertArrayEquals(first, f.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(g.getNodes().size() + g.getGenes().size(), h.getNextNodeID());
+	}
+	
+	@Test
+	void compact(){
+		Genome g = new Genome(2, 1);
+		History h = g.buildHistory();
+		h.setWindow(2);
+		Gene gene = g.getGenes().get(0);
+		int dead = h.geneInnovation(g.getNodes().get(3), g.getNodes().get(0));
+		int node = h.nodeInnovation(gene).getNodeID();
+		ArrayList<Genome> living = new ArrayList<>();
+		living.add(g);
+		for(int i = 0; i < 3; i++) {
+			h.compact(living);
+			assertEquals(dead, h.containsGeneInnovation(g.getNodes().get(3), g.getNodes().get(0)));
+		}
+		h.compact(living);
+		assertEquals(-1, h.containsGeneInnovation(g.getNodes().get(3), g.getNodes().get(0)));
+		assertEquals(node, h.containsNodeInnovation(gene));
+		for(Gene carried : g.getGenes()) {
+			assertEquals(carried.getGeneID(), h.containsGeneInnovation(carried.getFromNode(), carried.getToNode()));
+		}
+		int next = h.getNextGeneID();
+		assertEquals(next, h.geneInnovation(g.getNodes().get(3), g.getNodes().get(0)));
+		assertEquals(4, h.getEpoch());
+		for(int i = 0; i < 4; i++) {
+			h.compact(new ArrayList<>());
+		}
+		assertEquals(0, h.getNodeInnovationCount());
+		assertEquals(0, h.getGeneInnovationCount());
+		assertEquals(next + 1, h.geneInnovation(g.getNodes().get(3), g.getNodes().get(0)));
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class NetworkGeneratorTest{
+	
+	private Genome genome;
+	
+	@BeforeEach
+	void setUp(){
+		genome = new Genome(6, 3);
+		History history = genome.buildHistory();
+		for(int i = 0; i < 100; i++) {
+			history = genome.mutateGenome(history);
+		}
+		genome.buildNetwork();
+	}
+	
+	@Test
+	void generate(){
+		CompiledNetwork c = genome.getCompiled();
+		NetworkEvaluator e = NetworkGenerator.generate(c);
+		assertNotNull(e);
+		double[] ins = new double[6];
+		double[] outs = new double[3];
+		for(int t = 0; t < 50; t++) {
+			for(int i = 0; i < ins.length; i++) {
+				ins[i] = ThreadLocalRandom.current().nextDouble(-2, 2);
+			}
+			e.evaluate(ins, outs);
+			assertArrayEquals(c.run(ins), outs, 1e-12);
+		}
+		assertSame(e, NetworkGenerator.generate(new CompiledNetwork(genome)));
+	}
+	
+	@Test
+	void generateLater() throws Exception{
+		CompiledNetwork c = genome.getCompiled();
+		assertSame(NetworkGenerator.generate(c), NetworkGenerator.generateLater(c).get());
+		Genome small = new Genome(2, 1);
+		small.buildNetwork();
+		assertNull(NetworkGenerator.generateLater(small.getCompiled()).get());
+	}
+	
+	@Test
+	void hotGenome() throws Exception{
+		NetworkGenerator.setEnabled(true);
+		try {
+			double[] ins = {0.5, -1, 2, 0.25, -0.75, 1};
+			double[] expected = genome.runNetwork(ins);
+			for(int i = 0; i < NetworkGenerator.HOT_CALLS; i++) {
+				assertArrayEquals(expected, genome.runNetwork(ins), 1e-12);
+			}
+			for(int i = 0; i < 3000 && genome.getGenerated() == null; i++) {
+				Thread.sleep(10);
+			}
+			assertNotNull(genome.getGenerated());
+			assertArrayEquals(expected, genome.runNetwork(ins), 1e-12);
+		} finally {
+			NetworkGenerator.setEnabled(false);
+		}
+	}
+	
+	@Test
+	void generateSmall(){
+		Genome small = new Genome(2, 1);
+		small.buildNetwork();
+		assertNull(NetworkGenerator.generate(small.getCompiled()));
+	}
+}
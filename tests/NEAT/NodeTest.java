@@ -23,6 +23,9 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
 class NodeTest{
 	
 	@BeforeEach
@@ -43,6 +46,14 @@ class NodeTest{
 	
 	@Test
 	void copy(){
+		Node a = new Node(0, 0);
+		Node b = new Node(1, 1);
+		a.addGeneConnection(new Gene(a, b, 0, 0.5));
+		Node c = a.copy();
+		assertEquals(a, c);
+		assertNotSame(a.getOutputGenes(), c.getOutputGenes());
+		c.clearOutputGenes();
+		assertEquals(1, a.getOutputGenes().size());
 	}
 	
 	@Test
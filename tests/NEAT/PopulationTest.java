@@ -23,6 +23,13 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 class PopulationTest{
 	
 	@BeforeEach
@@ -35,6 +42,42 @@ class PopulationTest{
 	
 	@Test
 	void speciate(){
+		Population a = new Population(4, 2, 300, 11L);
+		Population b = new Population(4, 2, 300, 11L);
+		b.setParallel(false);
+		a.getCompatibility().setThreshold(1);
+		b.getCompatibility().setThreshold(1);
+		a.setIndexThreshold(4);
+		b.setIndexThreshold(4);
+		for(int i = 0; i < 40; i++) {
+			a.mutate();
+			b.mutate();
+			a.speciate();
+			b.speciate();
+		}
+		assertEquals(speciesOf(a), speciesOf(b));
+		assertTrue(a.getSpecies().size() > 4);
+		int members = 0;
+		HashSet<Integer> ids = new HashSet<>();
+		for(Species s : a.getSpecies()) {
+			assertTrue(ids.add(s.getSpecID()));
+			assertFalse(s.getSpeciesPlayer().isEmpty());
+			members += s.getSpeciesPlayer().size();
+		}
+		assertEquals(a.getPlayers().size(), members);
+	}
+	
+	/**
+	 * @return the species ID of every player, in order
+	 */
+	private String speciesOf(Population p){
+		StringBuilder s = new StringBuilder();
+		for(Player player : p.getPlayers()) {
+			for(Species species : p.getSpecies()) {
+				if(species.getSpeciesPlayer().contains(player)) s.append(species.getSpecID()).append(' ');
+			}
+		}
+		return s.toString();
 	}
 	
 	@Test
@@ -53,7 +96,50 @@ class PopulationTest{
 	void cullAndRePop(){
 	}
 	
+	/**
+	 * Describe the structure and weights of every player's genome
+	 */
+	private String describe(Population p){
+		StringBuilder s = new StringBuilder();
+		for(Player player : p.getPlayers()) {
+			for(Gene g : player.getBrain().getGenes()) {
+				s.append(g.getGeneID()).append(':').append(g.getFromNode().getID()).append('>')
+						.append(g.getToNode().getID()).append(g.isEnabled()).append(g.getWeight()).append(' ');
+			}
+			s.append('\n');
+		}
+		return s.toString();
+	}
+	
 	@Test
 	void mutate(){
+		Population a = new Population(4, 2, 30, 42L);
+		Population b = new Population(4, 2, 30, 42L);
+		Population c = new Population(4, 2, 30, 43L);
+		assertEquals(describe(a), describe(b));
+		for(int i = 0; i < 50; i++) {
+			a.mutate();
+			b.mutate();
+			c.mutate();
+		}
+		assertEquals(describe(a), describe(b));
+		assertNotEquals(describe(a), describe(c));
+		assertEquals(50, a.getGenerationNum());
+		assertEquals(42L, a.getSeed());
+	}
+	
+	@Test
+	void parallel(){
+		Population a = new Population(4, 2, 200, 7L);
+		Population b = new Population(4, 2, 200, 7L);
+		b.setParallel(false);
+		assertTrue(a.isParallel());
+		for(int i = 0; i < 60; i++) {
+			a.mutate();
+			b.mutate();
+		}
+		assertEquals(describe(a), describe(b));
+		assertEquals(a.getHistory().getNextGeneID(), b.getHistory().getNextGeneID());
+		assertEquals(a.getHistory().getNextNodeID(), b.getHistory().getNextNodeID());
 	}
 }
\ No newline at end of file
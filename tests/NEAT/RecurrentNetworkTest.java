@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecurrentNetworkTest{
+	
+	private Genome genome;
+	
+	@BeforeEach
+	void setUp(){
+		genome = new Genome(3, 2);
+		genome.setRecurrent(true);
+		History history = genome.buildHistory();
+		for(int i = 0; i < 150; i++) {
+			history = genome.mutateGenome(history);
+		}
+		genome.buildNetwork();
+	}
+	
+	@Test
+	void step(){
+		Genome g = new Genome(2, 1);
+		g.buildNetwork();
+		Node out = g.getNodes().get(3);
+		Gene loop = new Gene(out, out, 99, 1d);
+		g.getGenes().add(loop);
+		out.addGeneConnection(loop);
+		RecurrentNetwork r = g.buildRecurrent();
+		double[] ins = {0.3d, -0.2d};
+		double[] first = new double[1];
+		double[] second = new double[1];
+		r.step(ins, first);
+		r.step(ins, second);
+		assertNotEquals(first[0], second[0]);
+		r.reset();
+		r.step(ins, second);
+		assertEquals(first[0], second[0]);
+	}
+	
+	@Test
+	void matchesFeedForward(){
+		Genome g = new Genome(4, 3);
+		History history = g.buildHistory();
+		for(int i = 0; i < 100; i++) {
+			history = g.mutateGenome(history);
+		}
+		g.buildNetwork();
+		RecurrentNetwork r = g.buildRecurrent();
+		double[] ins = new double[4];
+		double[] outs = new double[3];
+		for(int t = 0; t < 20; t++) {
+			for(int i = 0; i < ins.length; i++) {
+				ins[i] = ThreadLocalRandom.current().nextDouble(-2, 2);
+			}
+			r.step(ins, outs);
+			assertArrayEquals(g.runNetwork(ins), outs, 1e-12);
+		}
+	}
+	
+	@Test
+	void backwardConnections(){
+		boolean backward = false;
+		for(Gene g : genome.getGenes()) {
+			if(g.getFromNode().getLayer() >= g.getToNode().getLayer()) backward = true;
+			assertTrue(g.getToNode().getLayer() > 0);
+		}
+		assertTrue(backward);
+	}
+	
+	@Test
+	void resetState(){
+		double[] ins = {1d, 0.5d, -1d};
+		double[] first = genome.runNetwork(ins);
+		genome.runNetwork(ins);
+		genome.resetState();
+		assertArrayEquals(first, genome.runNetwork(ins));
+	}
+}
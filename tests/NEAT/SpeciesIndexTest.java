@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpeciesIndexTest{
+	
+	/**
+	 * @return players descended from one genome, each mutated a different number of times
+	 */
+	private ArrayList<Player> players(int count){
+		Genome root = new Genome(4, 2, new SplittableRandom(5));
+		History h = root.buildHistory();
+		ArrayList<Player> players = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			Genome g = root.copy();
+			for(int j = 0; j < 20 + 3 * i; j++) {
+				h = g.mutateGenome(h);
+			}
+			players.add(new Player(g));
+		}
+		return players;
+	}
+	
+	private int scan(ArrayList<Species> species, Player p){
+		for(int i = 0; i < species.size(); i++) {
+			if(species.get(i).memberOfSpecies(p)) return i;
+		}
+		return -1;
+	}
+	
+	@Test
+	void sketch(){
+		Player a = players(1).get(0);
+		assertArrayEquals(SpeciesIndex.sketch(a.getBrain()), SpeciesIndex.sketch(a.getBrain().copy()));
+		Genome other = new Genome(4, 2, true);
+		other.getGenes().add(new Gene(new Node(0, 0), new Node(1, 5), 1000, 0.5));
+		assertNotEquals(SpeciesIndex.sketch(a.getBrain())[0], SpeciesIndex.sketch(other)[0]);
+	}
+	
+	@Test
+	void find(){
+		ArrayList<Player> players = players(120);
+		CompatibilityDistance d = new CompatibilityDistance();
+		d.setThreshold(0.8);
+		ArrayList<Species> species = new ArrayList<>();
+		for(int i = 0; i < 80; i++) {
+			Species s = new Species(i, players.get(i));
+			s.setCompatibility(d);
+			species.add(s);
+		}
+		SpeciesIndex exact = new SpeciesIndex(species, true, 1);
+		SpeciesIndex linear = new SpeciesIndex(new ArrayList<>(species), true, 1000);
+		SpeciesIndex loose = new SpeciesIndex(new ArrayList<>(species), false, 1);
+		assertEquals(80, exact.getIndexedCount());
+		assertEquals(0, linear.getIndexedCount());
+		for(Player p : players) {
+			int found = exact.find(p);
+			assertEquals(scan(species, p), linear.find(p));
+			assertEquals(scan(species, p) == -1, found == -1);
+			if(found != -1) assertTrue(species.get(found).memberOfSpecies(p));
+			int guess = loose.find(p);
+			if(guess != -1) assertTrue(species.get(guess).memberOfSpecies(p));
+		}
+		for(int i = 0; i < 80; i++) {
+			Player copy = new Player(players.get(i).getBrain().copy());
+			assertTrue(loose.find(copy) != -1);
+		}
+	}
+	
+	@Test
+	void add(){
+		ArrayList<Player> players = players(10);
+		ArrayList<Species> species = new ArrayList<>();
+		SpeciesIndex index = new SpeciesIndex(species, true, 4);
+		assertEquals(-1, index.find(players.get(0)));
+		for(int i = 0; i < 10; i++) {
+			index.add(new Species(i, players.get(i)));
+			assertEquals(i + 1 < 4 ? 0 : i + 1, index.getIndexedCount());
+		}
+		assertEquals(10, species.size());
+		for(Player p : players) {
+			assertTrue(species.get(index.find(p)).memberOfSpecies(p));
+		}
+	}
+}
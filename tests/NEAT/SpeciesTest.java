@@ -23,6 +23,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 class SpeciesTest{
 	
 	@BeforeEach
@@ -35,6 +39,12 @@ class SpeciesTest{
 	
 	@Test
 	void memberOfSpecies(){
+		Player r = new Player(3, 2);
+		Species s = new Species(0, r);
+		assertTrue(s.memberOfSpecies(r.copy()));
+		assertEquals(1, s.getSpeciesPlayer().size());
+		s.getCompatibility().setThreshold(0);
+		assertFalse(s.memberOfSpecies(r.copy()));
 	}
 	
 	@Test
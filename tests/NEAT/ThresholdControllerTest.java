@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThresholdControllerTest{
+	
+	@Test
+	void adjust(){
+		ThresholdController c = new ThresholdController(10, 1, 0, 0.1);
+		assertEquals(4, c.adjust(3, 20), 1e-12);
+		assertEquals(2, c.adjust(3, 0), 1e-12);
+		assertEquals(3, c.adjust(3, 10), 1e-12);
+		assertEquals(0.1, c.adjust(0.5, 0), 1e-12);
+	}
+	
+	@Test
+	void smoothing(){
+		ThresholdController c = new ThresholdController(10, 1, 0.5, 0.1);
+		assertEquals(4, c.adjust(3, 20), 1e-12);
+		assertEquals(20, c.getAverage(), 1e-12);
+		assertEquals(4, c.adjust(4, 0), 1e-12);
+		assertEquals(10, c.getAverage(), 1e-12);
+		assertEquals(3.5, c.adjust(4, 0), 1e-12);
+		assertEquals(-0.5, c.getAdjustment(), 1e-12);
+	}
+	
+	@Test
+	void swing(){
+		double[] range = new double[2];
+		double[] dampings = {0, 0.5};
+		for(int d = 0; d < dampings.length; d++) {
+			ThresholdController c = new ThresholdController(10, 0.5, dampings[d], 0.1);
+			double t = 2;
+			double low = Double.MAX_VALUE;
+			double high = 0;
+			for(int i = 0; i < 40; i++) {
+				t = c.adjust(t, i % 2 == 0 ? 14 : 6);
+				if(i >= 30) {
+					low = Math.min(low, t);
+					high = Math.max(high, t);
+				}
+			}
+			range[d] = high - low;
+		}
+		assertEquals(0.2, range[0], 1e-9);
+		assertTrue(range[1] < range[0] / 2, range[0] + " " + range[1]);
+	}
+	
+	@Test
+	void settle(){
+		for(double damping : new double[]{0, 0.5, 0.8}) {
+			ThresholdController c = new ThresholdController(10, 0.5, damping, 0.1);
+			double t = 1;
+			for(int i = 0; i < 100; i++) {
+				int species = (int) Math.round(60 / (t * t));
+				assertTrue(species > 0);
+				if(i >= 80) assertEquals(10, species);
+				t = c.adjust(t, species);
+			}
+		}
+	}
+	
+	@Test
+	void population(){
+		Population p = new Population(4, 2, 300, 3L);
+		p.getCompatibility().setThreshold(0.3);
+		for(int i = 0; i < 30; i++) {
+			p.mutate();
+		}
+		p.speciate();
+		int before = p.getSpeciesCount();
+		p.setController(new ThresholdController(8));
+		for(int i = 0; i < 40; i++) {
+			p.mutate();
+			p.speciate();
+		}
+		assertTrue(p.getThreshold() > 0.3);
+		assertTrue(Math.abs(p.getSpeciesCount() - 8) < Math.abs(before - 8), before + " " + p.getSpeciesCount());
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021.  Michael Harris
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * 'rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+ * and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions
+ * of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ * AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package NEAT;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TopologyCacheTest{
+	
+	private TopologyCache cache;
+	
+	@BeforeEach
+	void setUp(){
+		cache = new TopologyCache(2);
+	}
+	
+	@Test
+	void compile(){
+		Genome a = new Genome(3, 2);
+		Genome b = new Genome(3, 2);
+		a.setCache(cache);
+		b.setCache(cache);
+		a.buildNetwork();
+		b.buildNetwork();
+		assertSame(a.getCompiled().getTopology(), b.getCompiled().getTopology());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		
+		double[] ins = {0.2d, -0.4d, 0.9d};
+		assertArrayEquals(new CompiledNetwork(b).run(ins), b.runNetwork(ins), 1e-12);
+	}
+	
+	@Test
+	void eviction(){
+		Genome a = new Genome(3, 2);
+		a.setCache(cache);
+		a.buildNetwork();
+		NetworkTopology first = a.getCompiled().getTopology();
+		for(int i = 1; i <= 2; i++) {
+			Genome g = new Genome(3, 2 + i);
+			g.setCache(cache);
+			g.buildNetwork();
+		}
+		assertEquals(2, cache.size());
+		a.buildNetwork();
+		assertNotSame(first, a.getCompiled().getTopology());
+		assertEquals(4, cache.getMisses());
+	}
+}